@@ -1,7 +1,9 @@
 package com.campusnest.housingservice.controllers;
 
+import com.campusnest.housingservice.models.ArchivedHousingListing;
 import com.campusnest.housingservice.models.HousingListing;
 import com.campusnest.housingservice.models.ListingImage;
+import com.campusnest.housingservice.repository.ArchivedHousingListingRepository;
 import com.campusnest.housingservice.repository.HousingListingRepository;
 import com.campusnest.housingservice.repository.ListingImageRepository;
 import com.campusnest.housingservice.requests.CreateHousingListingRequest;
@@ -9,7 +11,10 @@ import com.campusnest.housingservice.requests.SearchHousingListingRequest;
 import com.campusnest.housingservice.requests.UpdateHousingListingRequest;
 import com.campusnest.housingservice.response.HousingListingResponse;
 import com.campusnest.housingservice.response.HousingListingSummaryResponse;
+import com.campusnest.housingservice.services.AvailabilityIndex;
 import com.campusnest.housingservice.services.HousingListingService;
+import com.campusnest.housingservice.services.ImageVariantService;
+import com.campusnest.housingservice.services.ListingHttpCacheService;
 import com.campusnest.housingservice.services.S3Service;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +24,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.http.ResponseEntity;
@@ -26,8 +32,10 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,9 +59,21 @@ public class HousingListingController {
     @Autowired
     private ListingImageRepository listingImageRepository;
 
+    @Autowired
+    private ImageVariantService imageVariantService;
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private ListingHttpCacheService listingHttpCacheService;
+
+    @Autowired
+    private ArchivedHousingListingRepository archivedHousingListingRepository;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
 
     @GetMapping("/cache-test")
     public String testRedisCache() {
@@ -107,6 +127,7 @@ public class HousingListingController {
                 log.info("Associating images with listing ID: " + savedListing.getId());
                 log.info("Found " + request.getS3Keys().size() + " images to associate.");
                 associateImages(savedListing, request.getS3Keys());
+                housingListingService.touchListing(savedListing.getId());
             }
 
             return ResponseEntity.status(HttpStatus.CREATED).body(convertToResponse(savedListing));
@@ -118,12 +139,20 @@ public class HousingListingController {
         }
     }
 
-    // Get all active listings (public endpoint)
+    // Get all active listings (public endpoint, supports If-None-Match)
     @GetMapping
     public ResponseEntity<List<HousingListingSummaryResponse>> getAllActiveListings(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest webRequest) {
         try {
+            // Conditional GET: answer 304 before touching the DB or signing any S3 URL
+            String eTag = listingHttpCacheService.searchETag(
+                    listingHttpCacheService.currentSearchGeneration(), "all", page, size);
+            if (eTag != null && webRequest.checkNotModified(eTag)) {
+                return null; // 304 already written
+            }
+
             List<HousingListing> allListings = housingListingService.findAllActive();
 
             // Apply pagination
@@ -133,24 +162,41 @@ public class HousingListingController {
                     .map(this::convertToSummaryResponse)
                     .collect(Collectors.toList());
 
-            return ResponseEntity.ok(response);
+            return cacheableResponse(response, eTag, listingHttpCacheService.searchCacheControl());
         } catch (Exception e) {
             log.error("Error getting active listings", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
-    // Get listing by ID (public endpoint)
+    // Get listing by ID (public endpoint, supports If-None-Match)
     @GetMapping("/{id}")
-    public ResponseEntity<HousingListingResponse> getListingById(@PathVariable Long id) {
+    public ResponseEntity<HousingListingResponse> getListingById(@PathVariable Long id, WebRequest webRequest) {
         try {
             Optional<HousingListing> listing = housingListingService.findById(id);
 
             if (listing.isEmpty() || !listing.get().getIsActive()) {
-                return ResponseEntity.notFound().build();
+                // Expired by the scheduler (possibly archived since): serve a tombstone so
+                // references held by other services (e.g. conversations in messaging-service)
+                // keep resolving. Listings hidden by their owner or an admin stay 404.
+                Optional<ArchivedHousingListing> gone = listing.isPresent()
+                        ? listing.map(ArchivedHousingListing::from)
+                        : archivedHousingListingRepository.findById(id);
+                return gone.filter(archived -> archived.getExpiredAt() != null)
+                        .map(archived -> ResponseEntity.ok()
+                                .cacheControl(listingHttpCacheService.listingCacheControl())
+                                .body(convertToTombstone(archived)))
+                        .orElseGet(() -> ResponseEntity.notFound().build());
             }
 
-            return ResponseEntity.ok(convertToResponse(listing.get()));
+            // Conditional GET: skip S3 URL signing and body serialization if client copy is current
+            String eTag = listingHttpCacheService.listingETag(listing.get());
+            if (webRequest.checkNotModified(eTag)) {
+                return null; // 304 already written
+            }
+
+            return cacheableResponse(convertToResponse(listing.get()), eTag,
+                    listingHttpCacheService.listingCacheControl());
 
         } catch (Exception e) {
             log.error("Error getting listing by id: " + id, e);
@@ -264,26 +310,34 @@ public class HousingListingController {
     public ResponseEntity<List<HousingListingSummaryResponse>> searchListings(
             @Valid @RequestBody SearchHousingListingRequest request) {
         try {
-            // Create Pageable for database-level pagination
-            int pageNum = request.getPage() != null ? request.getPage() : 0;
-            int pageSize = request.getSize() != null ? request.getSize() : 20;
-
-            // Create Sort object based on sortBy and sortDirection
-            String sortField = request.getSortBy() != null ? request.getSortBy() : "createdAt";
-            Sort.Direction direction = "desc".equals(request.getSortDirection()) ?
-                Sort.Direction.DESC : Sort.Direction.ASC;
-
-            Pageable pageable = PageRequest.of(pageNum, pageSize, Sort.by(direction, sortField));
-
-            // Use repository paginated method - loads ONLY the requested page from DB
-            Page<HousingListing> page = housingListingRepository.findByIsActiveTrue(pageable);
+            return ResponseEntity.ok(findSearchPage(request));
+        } catch (Exception e) {
+            log.error("Error searching listings", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 
-            // Convert to response - only processes the small page of results
-            List<HousingListingSummaryResponse> response = page.getContent().stream()
-                    .map(this::convertToSummaryResponse)
-                    .collect(Collectors.toList());
+    // Same search as query parameters - GET is cacheable by the gateway/CDN and supports If-None-Match
+    @GetMapping("/search")
+    public ResponseEntity<List<HousingListingSummaryResponse>> searchListingsCacheable(
+            @Valid @ModelAttribute SearchHousingListingRequest request,
+            WebRequest webRequest) {
+        try {
+            String eTag = listingHttpCacheService.searchETag(
+                    listingHttpCacheService.currentSearchGeneration(), "search",
+                    request.getCity(), request.getMinPrice(), request.getMaxPrice(),
+                    request.getAvailableFrom(), request.getAvailableTo(),
+                    request.getMinBedrooms(), request.getMaxBedrooms(),
+                    request.getMinBathrooms(), request.getMaxBathrooms(),
+                    request.getPage(), request.getSize(), request.getSortBy(), request.getSortDirection(),
+                    // Date ranges are answered from this node's AvailabilityIndex
+                    request.getAvailableFrom() != null && request.getAvailableTo() != null
+                            ? availabilityIndex.version() : null);
+            if (eTag != null && webRequest.checkNotModified(eTag)) {
+                return null; // 304 already written
+            }
 
-            return ResponseEntity.ok(response);
+            return cacheableResponse(findSearchPage(request), eTag, listingHttpCacheService.searchCacheControl());
         } catch (Exception e) {
             log.error("Error searching listings", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -347,6 +401,44 @@ public class HousingListingController {
     }
 
     // Helper methods
+    private List<HousingListingSummaryResponse> findSearchPage(SearchHousingListingRequest request) {
+        // Create Pageable for database-level pagination
+        int pageNum = request.getPage() != null ? request.getPage() : 0;
+        int pageSize = request.getSize() != null ? request.getSize() : 20;
+
+        // Create Sort object based on sortBy and sortDirection
+        String sortField = request.getSortBy() != null ? request.getSortBy() : "createdAt";
+        Sort.Direction direction = "desc".equals(request.getSortDirection()) ?
+            Sort.Direction.DESC : Sort.Direction.ASC;
+
+        Pageable pageable = PageRequest.of(pageNum, pageSize, Sort.by(direction, sortField));
+
+        // All filters applied in the query (date overlap via AvailabilityIndex) - loads ONLY the requested page
+        Page<HousingListing> page = housingListingService.searchListings(
+                request.getCity(), request.getMinPrice(), request.getMaxPrice(),
+                request.getAvailableFrom(), request.getAvailableTo(),
+                request.getMinBedrooms(), request.getMaxBedrooms(),
+                request.getMinBathrooms(), request.getMaxBathrooms(),
+                pageable);
+
+        // Convert to response - only processes the small page of results
+        return page.getContent().stream()
+                .map(this::convertToSummaryResponse)
+                .collect(Collectors.toList());
+    }
+
+    private <T> ResponseEntity<T> cacheableResponse(T body, String eTag, CacheControl cacheControl) {
+        if (eTag == null) {
+            // Redis unavailable - serve fresh content without validators
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(body);
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(cacheControl)
+                .varyBy("Accept-Encoding")
+                .body(body);
+    }
+
     private Map<String, String> getValidationErrors(BindingResult bindingResult) {
         Map<String, String> errors = new HashMap<>();
         bindingResult.getFieldErrors().forEach(error ->
@@ -359,6 +451,7 @@ public class HousingListingController {
             return;
         }
         log.info("Associating " + s3Keys.size() + " images with listing ID: " + listing.getId());
+        List<ListingImage> savedImages = new ArrayList<>();
         for (int i = 0; i < s3Keys.size(); i++) {
             log.info("Associating image " + (i + 1) + " with S3 key: " + s3Keys.get(i));
             ListingImage image = new ListingImage();
@@ -367,12 +460,27 @@ public class HousingListingController {
             image.setDisplayOrder(i + 1);
             image.setIsPrimary(i == 0); // First image is primary by default
 
-            listingImageRepository.save(image);
+            savedImages.add(listingImageRepository.save(image));
         }
+
+        // Thumbnail/medium variants are generated asynchronously
+        imageVariantService.generateVariants(savedImages);
     }
 
     @Transactional
     private void updateImages(HousingListing listing, List<String> s3Keys) {
+        // Clients may send back the upload keys from the create response; those objects are
+        // moved to canonical keys (and later deleted), so map them to the current key
+        Map<String, String> currentKeys = new HashMap<>();
+        for (ListingImage existing : listingImageRepository.findByListingIdOrderByDisplayOrder(listing.getId())) {
+            if (existing.getUploadKey() != null) {
+                currentKeys.put(existing.getUploadKey(), existing.getS3Key());
+            }
+        }
+        if (s3Keys != null && !currentKeys.isEmpty()) {
+            s3Keys = s3Keys.stream().map(key -> currentKeys.getOrDefault(key, key)).collect(Collectors.toList());
+        }
+
         // Delete existing images for this listing
         listingImageRepository.deleteByListing(listing);
 
@@ -380,6 +488,9 @@ public class HousingListingController {
         if (s3Keys != null && !s3Keys.isEmpty()) {
             associateImages(listing, s3Keys);
         }
+
+        // Image rows changed, the listing row did not - refresh its version explicitly
+        housingListingService.touchListing(listing.getId());
     }
 
     private boolean filterByBedBath(HousingListing listing, SearchHousingListingRequest request) {
@@ -471,9 +582,17 @@ public class HousingListingController {
                         try {
                             String signedUrl = s3Service.getSignedImageUrl(image.getS3Key());
                             imageInfo.setImageUrl(signedUrl);
+                            imageInfo.setMediumUrl(image.getMediumKey() != null
+                                    ? s3Service.getSignedImageUrl(image.getMediumKey())
+                                    : signedUrl);
+                            if (image.getMediumWebpKey() != null) {
+                                imageInfo.setMediumWebpUrl(s3Service.getSignedImageUrl(image.getMediumWebpKey()));
+                            }
                         } catch (Exception e) {
                             log.error("Error generating signed URL for S3 key: " + image.getS3Key(), e);
                             imageInfo.setImageUrl(null);
+                            imageInfo.setMediumUrl(null);
+                            imageInfo.setMediumWebpUrl(null);
                         }
                         return imageInfo;
                     })
@@ -484,6 +603,28 @@ public class HousingListingController {
         return response;
     }
 
+    /**
+     * No longer listed: basic facts only - no description, owner contact or images
+     */
+    private HousingListingResponse convertToTombstone(ArchivedHousingListing listing) {
+        HousingListingResponse response = new HousingListingResponse();
+        response.setId(listing.getId());
+        response.setTitle(listing.getTitle());
+        response.setPrice(listing.getPrice());
+        response.setAddress(listing.getAddress());
+        response.setCity(listing.getCity());
+        response.setBedrooms(listing.getBedrooms());
+        response.setBathrooms(listing.getBathrooms());
+        response.setAvailableFrom(listing.getAvailableFrom());
+        response.setAvailableTo(listing.getAvailableTo());
+        response.setIsActive(false);
+        response.setCreatedAt(listing.getCreatedAt());
+        response.setUpdatedAt(listing.getUpdatedAt());
+        response.setOwnerId(listing.getOwnerId());
+        response.setImages(List.of());
+        return response;
+    }
+
     private HousingListingSummaryResponse convertToSummaryResponse(HousingListing listing) {
         HousingListingSummaryResponse response = new HousingListingSummaryResponse();
         response.setId(listing.getId());
@@ -509,10 +650,17 @@ public class HousingListingController {
 
             if (primaryImage.isPresent()) {
                 try {
-                    response.setPrimaryImageUrl(s3Service.getSignedImageUrl(primaryImage.get().getS3Key()));
+                    // Cards only need the thumbnail; fall back to the original until it is generated
+                    ListingImage image = primaryImage.get();
+                    String key = image.getThumbnailKey() != null ? image.getThumbnailKey() : image.getS3Key();
+                    response.setPrimaryImageUrl(s3Service.getSignedImageUrl(key));
+                    if (image.getThumbnailWebpKey() != null) {
+                        response.setPrimaryImageWebpUrl(s3Service.getSignedImageUrl(image.getThumbnailWebpKey()));
+                    }
                 } catch (Exception e) {
                     log.error("Error generating signed URL", e);
                     response.setPrimaryImageUrl(null);
+                    response.setPrimaryImageWebpUrl(null);
                 }
             }
         }
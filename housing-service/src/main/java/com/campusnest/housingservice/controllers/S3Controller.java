@@ -1,12 +1,20 @@
 package com.campusnest.housingservice.controllers;
 
+import com.campusnest.housingservice.requests.CompleteMultipartUploadRequest;
+import com.campusnest.housingservice.requests.InitiateMultipartUploadRequest;
+import com.campusnest.housingservice.requests.PresignUploadPartsRequest;
 import com.campusnest.housingservice.services.S3Service;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,7 +29,12 @@ public class S3Controller {
             @RequestParam String fileName,
             @RequestParam String contentType) {
         
-        String presignedUrl = s3Service.generatePresignedUploadUrl(fileName, contentType);
+        String presignedUrl;
+        try {
+            presignedUrl = s3Service.generatePresignedUploadUrl(fileName, contentType);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
         String s3Key = s3Service.extractS3KeyFromUrl(presignedUrl);
         
         Map<String, String> response = new HashMap<>();
@@ -31,6 +44,89 @@ public class S3Controller {
         return ResponseEntity.ok(response);
     }
     
+    // ==================== Multipart Upload ====================
+    
+    @PostMapping("/multipart/initiate")
+    public ResponseEntity<?> initiateMultipartUpload(@Valid @RequestBody InitiateMultipartUploadRequest request) {
+        try {
+            CreateMultipartUploadResponse upload = s3Service.initiateMultipartUpload(
+                    request.getFileName(), request.getContentType());
+            
+            Map<String, String> response = new HashMap<>();
+            response.put("s3Key", upload.key());
+            response.put("uploadId", upload.uploadId());
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/multipart/parts")
+    public ResponseEntity<?> presignUploadParts(@Valid @RequestBody PresignUploadPartsRequest request) {
+        try {
+            int startPart = request.getStartPart() != null ? request.getStartPart() : 1;
+            List<String> urls = s3Service.generatePresignedPartUrls(
+                    request.getS3Key(), request.getUploadId(), startPart, request.getPartCount());
+            
+            List<Map<String, Object>> parts = new ArrayList<>();
+            for (int i = 0; i < urls.size(); i++) {
+                parts.add(Map.of("partNumber", startPart + i, "uploadUrl", urls.get(i)));
+            }
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("s3Key", request.getS3Key());
+            response.put("uploadId", request.getUploadId());
+            response.put("parts", parts);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    // Resume support - which parts has S3 already received?
+    @GetMapping("/multipart/parts")
+    public ResponseEntity<?> listUploadedParts(@RequestParam String s3Key, @RequestParam String uploadId) {
+        try {
+            List<Map<String, Object>> parts = s3Service.listUploadedParts(s3Key, uploadId).stream()
+                    .map(part -> Map.<String, Object>of(
+                            "partNumber", part.partNumber(),
+                            "etag", part.eTag(),
+                            "size", part.size()))
+                    .toList();
+            return ResponseEntity.ok(Map.of("s3Key", s3Key, "uploadId", uploadId, "parts", parts));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/multipart/complete")
+    public ResponseEntity<?> completeMultipartUpload(@Valid @RequestBody CompleteMultipartUploadRequest request) {
+        try {
+            List<CompletedPart> parts = request.getParts() == null ? List.of() : request.getParts().stream()
+                    .map(part -> CompletedPart.builder()
+                            .partNumber(part.getPartNumber())
+                            .eTag(part.getEtag())
+                            .build())
+                    .toList();
+            s3Service.completeMultipartUpload(request.getS3Key(), request.getUploadId(), parts);
+            
+            // Same shape as /upload-url - the key is what listing create/update expects in s3Keys
+            return ResponseEntity.ok(Map.of("s3Key", request.getS3Key()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @DeleteMapping("/multipart")
+    public ResponseEntity<?> abortMultipartUpload(@RequestParam String s3Key, @RequestParam String uploadId) {
+        try {
+            s3Service.abortMultipartUpload(s3Key, uploadId);
+            return ResponseEntity.noContent().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     @GetMapping("/url/**")
     public ResponseEntity<Map<String, String>> getImageUrl(HttpServletRequest request) {
         String s3Key = request.getRequestURI().substring("/api/images/url/".length());
@@ -55,7 +151,7 @@ public class S3Controller {
         Map<String, String> response = new HashMap<>();
         try {
             System.out.println("Testing S3 connection...");
-            String testUrl = s3Service.generatePresignedUploadUrl("test.txt", "text/plain");
+            String testUrl = s3Service.generatePresignedUploadUrl("test.jpg", "image/jpeg");
             System.out.println("S3 URL generated successfully: " + testUrl);
             
             response.put("status", "success");
@@ -0,0 +1,92 @@
+package com.campusnest.housingservice.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Cold copy of listings that have been inactive for a long time.
+ * Keeps the hot housing_listings table (and every active-listing scan) small.
+ * The id is the original listing id, not a new one.
+ */
+@Entity
+@Table(name = "housing_listings_archive", indexes = {
+    @Index(name = "idx_archive_owner_email", columnList = "owner_email"),
+    @Index(name = "idx_archive_archived_at", columnList = "archivedAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedHousingListing {
+    @Id
+    private Long id;
+
+    @Column(nullable = false, length = 255)
+    private String title;
+
+    @Column(columnDefinition = "TEXT")
+    private String description;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal price;
+
+    @Column(nullable = false)
+    private String address;
+
+    @Column(nullable = false)
+    private String city;
+
+    @Column(nullable = false)
+    private Integer bedrooms;
+
+    @Column(nullable = false)
+    private Integer bathrooms;
+
+    @Column(nullable = false)
+    private LocalDate availableFrom;
+
+    @Column(nullable = false)
+    private LocalDate availableTo;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "owner_email", nullable = false)
+    private String ownerEmail;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+
+    // Copied from the hot row - null for listings deactivated by their owner or an admin
+    private LocalDateTime expiredAt;
+
+    public static ArchivedHousingListing from(HousingListing listing) {
+        ArchivedHousingListing archived = new ArchivedHousingListing();
+        archived.setId(listing.getId());
+        archived.setTitle(listing.getTitle());
+        archived.setDescription(listing.getDescription());
+        archived.setPrice(listing.getPrice());
+        archived.setAddress(listing.getAddress());
+        archived.setCity(listing.getCity());
+        archived.setBedrooms(listing.getBedrooms());
+        archived.setBathrooms(listing.getBathrooms());
+        archived.setAvailableFrom(listing.getAvailableFrom());
+        archived.setAvailableTo(listing.getAvailableTo());
+        archived.setCreatedAt(listing.getCreatedAt());
+        archived.setUpdatedAt(listing.getUpdatedAt());
+        archived.setOwnerId(listing.getOwnerId());
+        archived.setOwnerEmail(listing.getOwnerEmail());
+        archived.setArchivedAt(LocalDateTime.now());
+        archived.setExpiredAt(listing.getExpiredAt());
+        return archived;
+    }
+}
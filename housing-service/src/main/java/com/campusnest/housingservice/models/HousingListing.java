@@ -23,6 +23,12 @@ import java.util.List;
     @Index(name = "idx_available_from", columnList = "availableFrom"),
     @Index(name = "idx_available_to", columnList = "availableTo"),
     @Index(name = "idx_city_price_active", columnList = "city, price, isActive"),
+    // Overlap predicate: equality on isActive, range on availableFrom, availableTo checked from the index (ICP)
+    @Index(name = "idx_active_available_range", columnList = "isActive, availableFrom, availableTo"),
+    // ListingExpiryService scans: expire (isActive = true AND availableTo < today),
+    // archive (isActive = false AND updatedAt < cutoff)
+    @Index(name = "idx_active_available_to", columnList = "isActive, availableTo"),
+    @Index(name = "idx_active_updated_at", columnList = "isActive, updatedAt"),
     @Index(name = "idx_owner_id", columnList = "ownerId")
 })
 @Data
@@ -63,6 +69,10 @@ public class HousingListing {
     @Column(nullable = false)
     private Boolean isActive = true;
 
+    // Set only when ListingExpiryService deactivated the listing (availableTo passed);
+    // such listings are served as tombstones, every other inactive listing stays a 404
+    private LocalDateTime expiredAt;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
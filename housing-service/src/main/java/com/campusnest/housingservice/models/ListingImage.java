@@ -7,7 +7,14 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "listing_images")
+@Table(name = "listing_images", indexes = {
+    @Index(name = "idx_listing_images_s3_key", columnList = "s3Key"),
+    @Index(name = "idx_listing_images_thumbnail_key", columnList = "thumbnail_key"),
+    @Index(name = "idx_listing_images_medium_key", columnList = "medium_key"),
+    @Index(name = "idx_listing_images_thumbnail_webp_key", columnList = "thumbnail_webp_key"),
+    @Index(name = "idx_listing_images_medium_webp_key", columnList = "medium_webp_key"),
+    @Index(name = "idx_listing_images_content_hash", columnList = "content_hash")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,6 +26,29 @@ public class ListingImage {
     @Column(nullable = false)
     private String s3Key;
 
+    // Hex SHA-256 of the object, set once the upload is moved to its canonical key
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Key the client uploaded to, kept after canonicalization so the create response's
+    // keys can be sent back on update (not a reference - the collector deletes the object)
+    @Column(name = "upload_key")
+    private String uploadKey;
+
+    // Derived variants written by ImageVariantService (null until generated)
+    @Column(name = "thumbnail_key")
+    private String thumbnailKey;
+
+    @Column(name = "medium_key")
+    private String mediumKey;
+
+    // WebP encodings of the same variants (null when no WebP writer is available)
+    @Column(name = "thumbnail_webp_key")
+    private String thumbnailWebpKey;
+
+    @Column(name = "medium_webp_key")
+    private String mediumWebpKey;
+
     @Column(name = "image_url")
     private String imageUrl = ""; // Empty string as placeholder since we generate signed URLs dynamically
 
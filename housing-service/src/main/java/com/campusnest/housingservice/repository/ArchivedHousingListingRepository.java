@@ -0,0 +1,9 @@
+package com.campusnest.housingservice.repository;
+
+import com.campusnest.housingservice.models.ArchivedHousingListing;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ArchivedHousingListingRepository extends JpaRepository<ArchivedHousingListing, Long> {
+}
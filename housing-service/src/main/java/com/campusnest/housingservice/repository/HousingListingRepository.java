@@ -4,12 +4,16 @@ import com.campusnest.housingservice.models.HousingListing;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -54,6 +58,106 @@ public interface HousingListingRepository extends JpaRepository<HousingListing,
         @Param("availableTo") LocalDate availableTo
     );
 
+    /**
+     * Paginated search behind /api/housing/search
+     *
+     * Every filter is optional (null = unbounded); ordering comes from the Pageable.
+     */
+    @Query("SELECT h FROM HousingListing h " +
+           "WHERE h.isActive = true " +
+           SEARCH_FILTERS)
+    Page<HousingListing> searchActive(
+        @Param("city") String city,
+        @Param("minPrice") BigDecimal minPrice,
+        @Param("maxPrice") BigDecimal maxPrice,
+        @Param("availableFrom") LocalDate availableFrom,
+        @Param("availableTo") LocalDate availableTo,
+        @Param("minBedrooms") Integer minBedrooms,
+        @Param("maxBedrooms") Integer maxBedrooms,
+        @Param("minBathrooms") Integer minBathrooms,
+        @Param("maxBathrooms") Integer maxBathrooms,
+        Pageable pageable
+    );
+
+    /**
+     * Same search restricted to candidate ids from the in-memory AvailabilityIndex
+     *
+     * The overlap predicate is re-applied so a stale index can never return
+     * a listing that no longer matches.
+     */
+    @Query("SELECT h FROM HousingListing h " +
+           "WHERE h.id IN :ids " +
+           "AND h.isActive = true " +
+           SEARCH_FILTERS)
+    Page<HousingListing> searchActiveByIdIn(
+        @Param("ids") Collection<Long> ids,
+        @Param("city") String city,
+        @Param("minPrice") BigDecimal minPrice,
+        @Param("maxPrice") BigDecimal maxPrice,
+        @Param("availableFrom") LocalDate availableFrom,
+        @Param("availableTo") LocalDate availableTo,
+        @Param("minBedrooms") Integer minBedrooms,
+        @Param("maxBedrooms") Integer maxBedrooms,
+        @Param("minBathrooms") Integer minBathrooms,
+        @Param("maxBathrooms") Integer maxBathrooms,
+        Pageable pageable
+    );
+
+    String SEARCH_FILTERS =
+           "AND (:city IS NULL OR h.city LIKE %:city%) " +
+           "AND (:minPrice IS NULL OR h.price >= :minPrice) " +
+           "AND (:maxPrice IS NULL OR h.price <= :maxPrice) " +
+           "AND (:availableTo IS NULL OR h.availableFrom <= :availableTo) " +
+           "AND (:availableFrom IS NULL OR h.availableTo >= :availableFrom) " +
+           "AND (:minBedrooms IS NULL OR h.bedrooms >= :minBedrooms) " +
+           "AND (:maxBedrooms IS NULL OR h.bedrooms <= :maxBedrooms) " +
+           "AND (:minBathrooms IS NULL OR h.bathrooms >= :minBathrooms) " +
+           "AND (:maxBathrooms IS NULL OR h.bathrooms <= :maxBathrooms)";
+
+    /**
+     * Fetch availability windows of active listings (for AvailabilityIndex rebuild)
+     * Returns [id, availableFrom, availableTo] rows only - no entity hydration.
+     */
+    @Query("SELECT h.id, h.availableFrom, h.availableTo FROM HousingListing h WHERE h.isActive = true")
+    List<Object[]> findActiveAvailabilityWindows();
+
+    // Same rows for the listings named in a change event (AvailabilityIndex.refresh)
+    @Query("SELECT h.id, h.availableFrom, h.availableTo FROM HousingListing h " +
+           "WHERE h.id IN :ids AND h.isActive = true")
+    List<Object[]> findActiveAvailabilityWindowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Expiry/archival batches (ListingExpiryService)
+     * All queries are keyset-friendly (ORDER BY id) and bounded by the Pageable size.
+     */
+    @Query("SELECT h.id FROM HousingListing h " +
+           "WHERE h.isActive = true AND h.availableTo < :today " +
+           "ORDER BY h.id")
+    List<Long> findExpiredActiveIds(@Param("today") LocalDate today, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE HousingListing h SET h.isActive = false, h.expiredAt = :now, h.updatedAt = :now " +
+           "WHERE h.id IN :ids AND h.isActive = true")
+    int expireByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Query("SELECT h FROM HousingListing h " +
+           "WHERE h.isActive = false AND h.updatedAt < :cutoff " +
+           "ORDER BY h.id")
+    List<HousingListing> findInactiveUpdatedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM HousingListing h WHERE h.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Bump updatedAt for changes stored outside the row (images, variants),
+     * so the listing ETag and downstream caches see them
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE HousingListing h SET h.updatedAt = :now WHERE h.id = :id")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now);
+
     // Count methods
     long countByIsActiveTrue();
 
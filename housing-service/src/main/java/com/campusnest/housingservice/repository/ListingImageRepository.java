@@ -2,6 +2,7 @@ package com.campusnest.housingservice.repository;
 
 import com.campusnest.housingservice.models.HousingListing;
 import com.campusnest.housingservice.models.ListingImage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +25,46 @@ public interface ListingImageRepository extends JpaRepository<ListingImage, Long
     @Query("DELETE FROM ListingImage li WHERE li.listing = :listing")
     void deleteByListing(@Param("listing") HousingListing listing);
     
+    @Modifying
+    @Query("DELETE FROM ListingImage li WHERE li.listing.id IN :listingIds")
+    int deleteByListingIdIn(@Param("listingIds") Collection<Long> listingIds);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ListingImage li SET li.thumbnailKey = :thumbnailKey, li.mediumKey = :mediumKey, " +
+           "li.thumbnailWebpKey = :thumbnailWebpKey, li.mediumWebpKey = :mediumWebpKey WHERE li.id = :id")
+    int updateVariantKeys(@Param("id") Long id,
+                          @Param("thumbnailKey") String thumbnailKey,
+                          @Param("mediumKey") String mediumKey,
+                          @Param("thumbnailWebpKey") String thumbnailWebpKey,
+                          @Param("mediumWebpKey") String mediumWebpKey);
+
+    // Images never canonicalized or still missing variants (keyset page, ORDER BY id)
+    @Query("SELECT li.id FROM ListingImage li WHERE li.id > :afterId " +
+           "AND (li.contentHash IS NULL OR li.thumbnailKey IS NULL OR li.mediumKey IS NULL) ORDER BY li.id")
+    List<Long> findIdsPendingVariants(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ListingImage li SET " +
+           "li.uploadKey = CASE WHEN li.uploadKey IS NULL AND li.s3Key <> :s3Key THEN li.s3Key ELSE li.uploadKey END, " +
+           "li.s3Key = :s3Key, li.contentHash = :contentHash WHERE li.id = :id")
+    int updateContentKey(@Param("id") Long id,
+                         @Param("s3Key") String s3Key,
+                         @Param("contentHash") String contentHash);
+
+    // Reference count of a canonical object
+    long countByContentHash(String contentHash);
+
+    @Query("SELECT li.listing.id FROM ListingImage li WHERE li.id = :id")
+    Long findListingIdById(@Param("id") Long id);
+
+    // Which of these S3 keys are still referenced as an original or a variant
+    @Query("SELECT li.s3Key, li.thumbnailKey, li.mediumKey, li.thumbnailWebpKey, li.mediumWebpKey FROM ListingImage li " +
+           "WHERE li.s3Key IN :keys OR li.thumbnailKey IN :keys OR li.mediumKey IN :keys " +
+           "OR li.thumbnailWebpKey IN :keys OR li.mediumWebpKey IN :keys")
+    List<Object[]> findReferencedKeys(@Param("keys") Collection<String> keys);
+
     long countByListing(HousingListing listing);
     
     List<ListingImage> findByListingIdOrderByDisplayOrder(Long listingId);
@@ -0,0 +1,31 @@
+package com.campusnest.housingservice.requests;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CompleteMultipartUploadRequest {
+
+    @NotBlank(message = "S3 key is required")
+    private String s3Key;
+
+    @NotBlank(message = "Upload ID is required")
+    private String uploadId;
+
+    // Optional - when omitted the uploaded parts are listed from S3
+    @Valid
+    private List<Part> parts;
+
+    @Data
+    public static class Part {
+        @NotNull(message = "Part number is required")
+        private Integer partNumber;
+
+        @NotBlank(message = "ETag is required")
+        private String etag;
+    }
+}
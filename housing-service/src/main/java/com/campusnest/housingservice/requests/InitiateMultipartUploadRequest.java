@@ -0,0 +1,16 @@
+package com.campusnest.housingservice.requests;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+public class InitiateMultipartUploadRequest {
+
+    @NotBlank(message = "File name is required")
+    @Size(max = 200, message = "File name must be less than 200 characters")
+    private String fileName;
+
+    @NotBlank(message = "Content type is required")
+    private String contentType;
+}
@@ -0,0 +1,27 @@
+package com.campusnest.housingservice.requests;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class PresignUploadPartsRequest {
+
+    @NotBlank(message = "S3 key is required")
+    private String s3Key;
+
+    @NotBlank(message = "Upload ID is required")
+    private String uploadId;
+
+    // First part number to sign (1-based), lets a resuming client skip finished parts
+    @Min(value = 1, message = "Start part must be 1 or greater")
+    @Max(value = 10000, message = "Start part must be 10000 or less")
+    private Integer startPart = 1;
+
+    @NotNull(message = "Part count is required")
+    @Min(value = 1, message = "Part count must be 1 or greater")
+    @Max(value = 100, message = "At most 100 part URLs can be signed per call")
+    private Integer partCount;
+}
@@ -2,6 +2,7 @@ package com.campusnest.housingservice.requests;
 
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.DecimalMax;
+import org.springframework.format.annotation.DateTimeFormat;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -16,8 +17,10 @@ public class SearchHousingListingRequest {
     @DecimalMax(value = "50000.0", message = "Maximum price must be $50,000 or less")
     private BigDecimal maxPrice;
     
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
     private LocalDate availableFrom;
     
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
     private LocalDate availableTo;
     
     private Integer minBedrooms;
@@ -47,6 +47,8 @@ public class HousingListingResponse {
         private Long id;
         private String s3Key;
         private String imageUrl; // Signed URL - will be generated when needed
+        private String mediumUrl; // Signed URL of the medium variant (falls back to imageUrl until generated)
+        private String mediumWebpUrl; // Signed URL of the WebP medium variant (null until generated)
         private Boolean isPrimary;
         private Integer displayOrder;
     }
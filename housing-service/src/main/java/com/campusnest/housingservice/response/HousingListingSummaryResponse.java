@@ -29,6 +29,8 @@ public class HousingListingSummaryResponse {
 
     private String primaryImageUrl; // Only the main image for listings view
 
+    private String primaryImageWebpUrl; // WebP thumbnail of the main image (null until generated)
+
     // Owner information (denormalized for microservices)
     private String ownerEmail;
 
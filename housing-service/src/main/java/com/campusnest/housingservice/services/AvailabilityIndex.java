@@ -0,0 +1,365 @@
+package com.campusnest.housingservice.services;
+
+import com.campusnest.housingservice.models.HousingListing;
+import com.campusnest.housingservice.repository.HousingListingRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory availability index (date-range overlap queries)
+ *
+ * Problem:
+ * "availableFrom <= :to AND availableTo >= :from" is a two-sided range predicate.
+ * MySQL can only range-scan one side of it per index, so the query degrades to
+ * scanning every active listing whose availableFrom is in the past.
+ *
+ * Structure (per-month bitmap):
+ * - Each active listing is added to one BitSet per calendar month it overlaps
+ *   (bit position = listing id)
+ * - Listings spanning more than MAX_BUCKETED_MONTHS live in a single "long-lived" BitSet
+ * - Ids above Integer.MAX_VALUE cannot be bits; they are kept in a small set that every
+ *   query checks directly
+ * - The exact [from, to] window of every listing is kept alongside for the final check
+ *
+ * Query [from, to]:
+ * OR the month BitSets in range (+ long-lived set) → candidate ids → exact overlap check.
+ * Cost is proportional to the number of months queried and candidates, not table size.
+ *
+ * Consistency:
+ * - Local writes are applied after commit
+ * - Writes on any node are picked up from ListingChangePublisher events: the named ids
+ *   are re-read from the database (the periodic rebuild covers lost events)
+ * - Callers always re-apply the overlap predicate in SQL, so a stale index can only
+ *   narrow results between refreshes, never return wrong listings
+ * - version() changes with every applied change; search ETags for index-answered
+ *   queries include it, so a page built from a stale index is not pinned by a 304
+ *   once the index has caught up
+ */
+@Component
+@Slf4j
+public class AvailabilityIndex {
+
+    private static final int MAX_BUCKETED_MONTHS = 36;
+
+    @Autowired
+    private HousingListingRepository housingListingRepository;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Value("${housing.availability-index.enabled:true}")
+    private boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Snapshot snapshot = new Snapshot();
+
+    private volatile boolean ready = false;
+
+    private final AtomicLong version = new AtomicLong();
+
+    // Changes applied while a rebuild is reading the DB, replayed onto the new snapshot
+    private Map<Long, long[]> changesDuringRebuild = null;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> refresh(message.getBody()),
+                new ChannelTopic(ListingChangePublisher.LISTING_CHANGED_CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${housing.availability-index.refresh-interval-ms:300000}",
+            initialDelayString = "${housing.availability-index.refresh-interval-ms:300000}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuild the whole index from the database (id + date columns only)
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Snapshot fresh = new Snapshot();
+        try {
+            for (Object[] row : housingListingRepository.findActiveAvailabilityWindows()) {
+                fresh.put((Long) row[0], toWindow((LocalDate) row[1], (LocalDate) row[2]));
+            }
+        } catch (Exception e) {
+            log.error("Failed to rebuild availability index: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach((id, window) -> {
+                fresh.remove(id);
+                if (window != null) {
+                    fresh.put(id, window);
+                }
+            });
+            changesDuringRebuild = null;
+            snapshot = fresh;
+            ready = true;
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Availability index rebuilt: {} active listings in {} ms",
+                fresh.windows.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Ids of active listings whose availability overlaps [from, to] (inclusive),
+     * or null if the index cannot answer (disabled or not built yet).
+     */
+    public Set<Long> findOverlapping(LocalDate from, LocalDate to) {
+        if (!enabled || !ready || from == null || to == null || to.isBefore(from)) {
+            return null;
+        }
+
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        int fromMonth = monthIndex(from);
+        int toMonth = monthIndex(to);
+
+        lock.readLock().lock();
+        try {
+            Set<Long> result = new HashSet<>();
+
+            // Very wide query windows touch most buckets anyway - check windows directly
+            if (toMonth - fromMonth > MAX_BUCKETED_MONTHS) {
+                snapshot.windows.forEach((id, window) -> {
+                    if (overlaps(window, fromDay, toDay)) {
+                        result.add(id);
+                    }
+                });
+                return result;
+            }
+
+            BitSet candidates = (BitSet) snapshot.longLived.clone();
+            for (int month = fromMonth; month <= toMonth; month++) {
+                BitSet bucket = snapshot.buckets.get(month);
+                if (bucket != null) {
+                    candidates.or(bucket);
+                }
+            }
+
+            for (int bit = candidates.nextSetBit(0); bit >= 0; bit = candidates.nextSetBit(bit + 1)) {
+                long[] window = snapshot.windows.get((long) bit);
+                if (window != null && overlaps(window, fromDay, toDay)) {
+                    result.add((long) bit);
+                }
+            }
+            for (Long id : snapshot.unbitmapped) {
+                if (overlaps(snapshot.windows.get(id), fromDay, toDay)) {
+                    result.add(id);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Local change counter (-1 until the first build) - part of index-based search ETags
+     */
+    public long version() {
+        return enabled && ready ? version.get() : -1L;
+    }
+
+    /**
+     * Re-read the listings named in a change event (comma-separated ids)
+     */
+    private void refresh(byte[] body) {
+        if (!enabled) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>();
+        for (String id : new String(body, StandardCharsets.UTF_8).split(",")) {
+            try {
+                ids.add(Long.parseLong(id.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed listing change id: {}", id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            Map<Long, long[]> windows = new HashMap<>();
+            for (Object[] row : housingListingRepository.findActiveAvailabilityWindowsByIdIn(ids)) {
+                windows.put((Long) row[0], toWindow((LocalDate) row[1], (LocalDate) row[2]));
+            }
+            ids.forEach(id -> apply(id, windows.get(id)));
+        } catch (Exception e) {
+            log.warn("Failed to refresh availability index for {}: {}", ids, e.getMessage());
+        }
+    }
+
+    /**
+     * Reflect a created/updated/toggled listing once the surrounding transaction commits
+     */
+    public void onListingChanged(HousingListing listing) {
+        Long id = listing.getId();
+        long[] window = Boolean.TRUE.equals(listing.getIsActive())
+                && listing.getAvailableFrom() != null && listing.getAvailableTo() != null
+                ? toWindow(listing.getAvailableFrom(), listing.getAvailableTo())
+                : null;
+        afterCommit(() -> apply(id, window));
+    }
+
+    /**
+     * Remove a deactivated/deleted listing once the surrounding transaction commits
+     */
+    public void onListingRemoved(Long id) {
+        afterCommit(() -> apply(id, null));
+    }
+
+    private void apply(Long id, long[] window) {
+        if (id == null || !enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            snapshot.remove(id);
+            if (window != null) {
+                snapshot.put(id, window);
+            }
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.put(id, window);
+            }
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long[] toWindow(LocalDate from, LocalDate to) {
+        return new long[]{from.toEpochDay(), to.toEpochDay()};
+    }
+
+    private static boolean overlaps(long[] window, long fromDay, long toDay) {
+        return window[0] <= toDay && window[1] >= fromDay;
+    }
+
+    private static int monthIndex(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    private static int monthIndexOfEpochDay(long epochDay) {
+        return monthIndex(LocalDate.ofEpochDay(epochDay));
+    }
+
+    /**
+     * Mutable index state, guarded by the outer read/write lock
+     */
+    private static class Snapshot {
+        private final Map<Long, long[]> windows = new HashMap<>();
+        private final Map<Integer, BitSet> buckets = new HashMap<>();
+        private final BitSet longLived = new BitSet();
+        // Ids not addressable as a bit - checked one by one on every query
+        private final Set<Long> unbitmapped = new HashSet<>();
+
+        void put(Long id, long[] window) {
+            windows.put(id, window);
+            if (id > Integer.MAX_VALUE) {
+                unbitmapped.add(id);
+                return;
+            }
+            int bit = id.intValue();
+
+            int fromMonth = monthIndexOfEpochDay(window[0]);
+            int toMonth = monthIndexOfEpochDay(window[1]);
+            if (toMonth - fromMonth >= MAX_BUCKETED_MONTHS) {
+                longLived.set(bit);
+                return;
+            }
+            for (int month = fromMonth; month <= toMonth; month++) {
+                buckets.computeIfAbsent(month, m -> new BitSet()).set(bit);
+            }
+        }
+
+        void remove(Long id) {
+            long[] window = windows.remove(id);
+            if (window == null || unbitmapped.remove(id)) {
+                return;
+            }
+            int bit = id.intValue();
+            longLived.clear(bit);
+            int fromMonth = monthIndexOfEpochDay(window[0]);
+            int toMonth = monthIndexOfEpochDay(window[1]);
+            if (toMonth - fromMonth >= MAX_BUCKETED_MONTHS) {
+                return;
+            }
+            for (int month = fromMonth; month <= toMonth; month++) {
+                BitSet bucket = buckets.get(month);
+                if (bucket != null) {
+                    bucket.clear(bit);
+                    if (bucket.isEmpty()) {
+                        buckets.remove(month);
+                    }
+                }
+            }
+        }
+    }
+}
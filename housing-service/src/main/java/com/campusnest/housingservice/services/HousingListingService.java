@@ -1,6 +1,8 @@
 package com.campusnest.housingservice.services;
 
 import com.campusnest.housingservice.models.HousingListing;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -19,6 +21,9 @@ public interface HousingListingService {
     HousingListing updateListing(Long id, HousingListing updatedListing, String requesterEmail);
     
     void deleteListing(Long id, String requesterEmail);
+
+    // Record an image-only change (bumps updatedAt, evicts caches, notifies subscribers)
+    void touchListing(Long id);
     
     // Owner-specific operations
     List<HousingListing> findByOwner(String ownerEmail);
@@ -28,6 +33,12 @@ public interface HousingListingService {
     // Search operations
     List<HousingListing> searchListings(String city, BigDecimal minPrice, BigDecimal maxPrice, 
                                        LocalDate availableFrom, LocalDate availableTo);
+
+    Page<HousingListing> searchListings(String city, BigDecimal minPrice, BigDecimal maxPrice,
+                                       LocalDate availableFrom, LocalDate availableTo,
+                                       Integer minBedrooms, Integer maxBedrooms,
+                                       Integer minBathrooms, Integer maxBathrooms,
+                                       Pageable pageable);
     
     List<HousingListing> searchByCity(String city);
     
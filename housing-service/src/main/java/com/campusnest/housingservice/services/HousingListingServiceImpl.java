@@ -7,12 +7,15 @@ import com.campusnest.housingservice.repository.ListingImageRepository;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +25,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 @Service("housingListingService")
@@ -47,6 +51,19 @@ public class HousingListingServiceImpl implements HousingListingService {
     @Autowired
     private CacheMetricsService cacheMetricsService;
 
+    @Autowired
+    private ListingHttpCacheService listingHttpCacheService;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private ListingChangePublisher listingChangePublisher;
+
+    // Above this many candidates the IN-list costs more than the composite-index range scan
+    @Value("${housing.availability-index.max-candidates:1000}")
+    private int maxIndexCandidates;
+
     // TODO: In a real microservices architecture, we would call user-service via REST/gRPC
     // to get userId from email. For now, we'll use a placeholder.
     private Long getUserIdFromEmail(String email) {
@@ -73,6 +90,10 @@ public class HousingListingServiceImpl implements HousingListingService {
         bloomFilterConfig.addId(savedListing.getId());
         log.debug("Added new listing ID {} to Bloom Filter", savedListing.getId());
 
+        listingHttpCacheService.bumpSearchGeneration();
+        availabilityIndex.onListingChanged(savedListing);
+        listingChangePublisher.publish(savedListing.getId());
+
         return savedListing;
     }
 
@@ -248,6 +269,9 @@ public class HousingListingServiceImpl implements HousingListingService {
         existingListing.setAvailableTo(updatedListing.getAvailableTo());
         existingListing.setUpdatedAt(LocalDateTime.now());
 
+        listingHttpCacheService.bumpSearchGeneration();
+        availabilityIndex.onListingChanged(existingListing);
+        listingChangePublisher.publish(id);
         return housingListingRepository.save(existingListing);
     }
 
@@ -261,8 +285,23 @@ public class HousingListingServiceImpl implements HousingListingService {
 
         // Soft delete - set isActive to false
         listing.setIsActive(false);
+        listing.setExpiredAt(null);
         listing.setUpdatedAt(LocalDateTime.now());
         housingListingRepository.save(listing);
+        listingHttpCacheService.bumpSearchGeneration();
+        availabilityIndex.onListingRemoved(id);
+        listingChangePublisher.publish(id);
+    }
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(value = "housing-listings", key = "#id"),
+            @CacheEvict(value = "housing-search", allEntries = true)
+    })
+    public void touchListing(Long id) {
+        housingListingRepository.touch(id, LocalDateTime.now());
+        listingHttpCacheService.bumpSearchGeneration();
+        listingChangePublisher.publish(id);
     }
 
     // Optional: Add hard delete method for complete removal
@@ -277,6 +316,9 @@ public class HousingListingServiceImpl implements HousingListingService {
 
         // Hard delete the listing
         housingListingRepository.delete(listing);
+        listingHttpCacheService.bumpSearchGeneration();
+        availabilityIndex.onListingRemoved(id);
+        listingChangePublisher.publish(id);
     }
 
     @Override
@@ -295,7 +337,32 @@ public class HousingListingServiceImpl implements HousingListingService {
     @Transactional(readOnly = true)
     public List<HousingListing> searchListings(String city, BigDecimal minPrice, BigDecimal maxPrice,
                                               LocalDate availableFrom, LocalDate availableTo) {
-        return housingListingRepository.findBySearchCriteria(city, minPrice, maxPrice, availableFrom, availableTo);
+        return searchListings(city, minPrice, maxPrice, availableFrom, availableTo, null, null, null, null,
+                Pageable.unpaged(Sort.by(Sort.Direction.DESC, "createdAt"))).getContent();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<HousingListing> searchListings(String city, BigDecimal minPrice, BigDecimal maxPrice,
+                                              LocalDate availableFrom, LocalDate availableTo,
+                                              Integer minBedrooms, Integer maxBedrooms,
+                                              Integer minBathrooms, Integer maxBathrooms,
+                                              Pageable pageable) {
+        String cityFilter = city != null && !city.isBlank() ? city.trim() : null;
+
+        // Resolve the date-overlap part in memory, then let MySQL filter the candidates by PK
+        Set<Long> candidateIds = availabilityIndex.findOverlapping(availableFrom, availableTo);
+        if (candidateIds != null && candidateIds.size() <= maxIndexCandidates) {
+            if (candidateIds.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            return housingListingRepository.searchActiveByIdIn(candidateIds, cityFilter, minPrice, maxPrice,
+                    availableFrom, availableTo, minBedrooms, maxBedrooms, minBathrooms, maxBathrooms, pageable);
+        }
+
+        // Index not ready, no date range or too many candidates - fall back to idx_active_available_range
+        return housingListingRepository.searchActive(cityFilter, minPrice, maxPrice,
+                availableFrom, availableTo, minBedrooms, maxBedrooms, minBathrooms, maxBathrooms, pageable);
     }
 
     @Override
@@ -351,8 +418,12 @@ public class HousingListingServiceImpl implements HousingListingService {
                 .orElseThrow(() -> new RuntimeException("Listing not found: " + id));
 
         listing.setIsActive(!listing.getIsActive());
+        listing.setExpiredAt(null);
         listing.setUpdatedAt(LocalDateTime.now());
 
+        listingHttpCacheService.bumpSearchGeneration();
+        availabilityIndex.onListingChanged(listing);
+        listingChangePublisher.publish(id);
         return housingListingRepository.save(listing);
     }
 
@@ -382,17 +453,24 @@ public class HousingListingServiceImpl implements HousingListingService {
 
     @CachePut(value = "housing-listings", key = "#result.id")
     public HousingListing saveOrUpdate(HousingListing listing) {
-        return housingListingRepository.save(listing);
+        listingHttpCacheService.bumpSearchGeneration();
+        HousingListing saved = housingListingRepository.save(listing);
+        availabilityIndex.onListingChanged(saved);
+        listingChangePublisher.publish(saved.getId());
+        return saved;
     }
 
     @CacheEvict(value = "housing-listings", key = "#id")
     public void delete(Long id) {
         housingListingRepository.deleteById(id);
+        availabilityIndex.onListingRemoved(id);
+        listingChangePublisher.publish(id);
         clearSearchCache();
     }
 
     @CacheEvict(value = "housing-search", allEntries = true)
     public void clearSearchCache() {
-        // Empty method - annotation handles cache clearing
+        // Annotation handles cache clearing; HTTP ETags for list endpoints follow the same lifecycle
+        listingHttpCacheService.bumpSearchGeneration();
     }
 }
\ No newline at end of file
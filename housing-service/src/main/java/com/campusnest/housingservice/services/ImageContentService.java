@@ -0,0 +1,255 @@
+package com.campusnest.housingservice.services;
+
+import com.campusnest.housingservice.models.ListingImage;
+import com.campusnest.housingservice.repository.ListingImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload validation + content-addressed storage
+ *
+ * Problem:
+ * The same photo uploaded for several listings was stored, signed and cached once per copy,
+ * and nothing stopped a client from attaching a non-image or a huge file.
+ *
+ * Flow (runs on the image worker before variants are generated):
+ * 1. HEAD the upload - reject anything above housing.images.max-size-bytes
+ * 2. Stream the object through a DigestInputStream (fixed 8 KB buffer, never the whole
+ *    file in heap) while checking the leading magic bytes
+ * 3. Copy to listing-images/sha256/<hash>.<ext> unless that object already exists;
+ *    an existing object is copied onto itself instead, which refreshes its LastModified
+ *    so the orphan collector's grace period starts over
+ * 4. Point the ListingImage row at the canonical key
+ *
+ * Steps 3-4 run under the read side of CANONICAL_LOCK_KEY; the orphan collector holds
+ * the write side from its reference check until its delete. A canonical object is
+ * therefore either seen as referenced by the collector, or already gone when we look
+ * for it here (and copied again from the upload). Canonical keys sent back by clients go
+ * through the same HEAD + copy-in-place under the read lock; if the object is already gone
+ * the image is rejected.
+ *
+ * Reference counting:
+ * Every listing_images row with the same content_hash shares one canonical object, so the
+ * row count is the reference count. Nothing deletes canonical objects directly - once the
+ * count drops to zero the orphan collector removes it (and the original upload key, which
+ * is unreferenced as soon as the row moves).
+ */
+@Service
+@Slf4j
+public class ImageContentService {
+
+    public static final String CANONICAL_PREFIX = "listing-images/sha256/";
+
+    public static final String CANONICAL_LOCK_KEY = "lock:housing-canonical-images";
+
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private ListingImageRepository listingImageRepository;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Value("${housing.images.canonical-lock-lease-seconds:60}")
+    private long canonicalLockLeaseSeconds;
+
+    @Value("${housing.images.max-size-bytes:15728640}")
+    private long maxSizeBytes;
+
+    private final Counter dedupHitCounter;
+    private final Counter rejectedCounter;
+
+    public ImageContentService(MeterRegistry meterRegistry) {
+        this.dedupHitCounter = Counter.builder("housing.images.dedup.hits")
+                .description("Uploads whose content already existed under a canonical key")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("housing.images.rejected")
+                .description("Uploads rejected as oversized or not an image")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Validate the upload behind this row and move it to its canonical key.
+     * On success the passed entity is updated in place.
+     *
+     * @return false if the upload was rejected (row and object removed)
+     */
+    public boolean canonicalize(ListingImage image) throws IOException {
+        String key = image.getS3Key();
+
+        // Already content-addressed (e.g. keys re-sent on listing update)
+        if (key.startsWith(CANONICAL_PREFIX)) {
+            return adoptCanonical(image, key);
+        }
+
+        HeadObjectResponse head = s3Service.headImage(key);
+        if (head == null) {
+            log.warn("Uploaded object {} not found for image {}", key, image.getId());
+            return reject(image, "missing object");
+        }
+        if (head.contentLength() != null && head.contentLength() > maxSizeBytes) {
+            return reject(image, "size " + head.contentLength() + " exceeds " + maxSizeBytes);
+        }
+
+        MessageDigest digest = sha256();
+        ImageFormat format;
+        try (InputStream in = new DigestInputStream(s3Service.openImage(key), digest)) {
+            format = ImageFormat.detect(in.readNBytes(12));
+            if (format == null) {
+                return reject(image, "not a recognised image format");
+            }
+
+            byte[] buffer = new byte[8192];
+            long total = 12;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxSizeBytes) {
+                    return reject(image, "streamed size exceeds " + maxSizeBytes);
+                }
+            }
+        }
+
+        String hash = HexFormat.of().formatHex(digest.digest());
+        String canonicalKey = CANONICAL_PREFIX + hash + "." + format.extension;
+
+        RLock lock = redissonClient.getReadWriteLock(CANONICAL_LOCK_KEY).readLock();
+        lock.lock(canonicalLockLeaseSeconds, TimeUnit.SECONDS);
+        try {
+            if (s3Service.headImage(canonicalKey) != null) {
+                // Copy in place (REPLACE metadata) - resets LastModified for the orphan collector
+                s3Service.copyImage(canonicalKey, canonicalKey, format.contentType);
+                dedupHitCounter.increment();
+                log.debug("Image {} deduplicated onto existing {}", image.getId(), canonicalKey);
+            } else {
+                s3Service.copyImage(key, canonicalKey, format.contentType);
+            }
+
+            listingImageRepository.updateContentKey(image.getId(), canonicalKey, hash);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+        image.setS3Key(canonicalKey);
+        image.setContentHash(hash);
+
+        log.debug("Image {} stored as {} (references: {})", image.getId(), canonicalKey,
+                listingImageRepository.countByContentHash(hash));
+        return true;
+    }
+
+    /**
+     * Attach an existing canonical object - under the same read lock as a fresh upload, so
+     * the collector cannot delete it between the check and the row write
+     */
+    private boolean adoptCanonical(ListingImage image, String key) {
+        String hash = hashFromCanonicalKey(key);
+        RLock lock = redissonClient.getReadWriteLock(CANONICAL_LOCK_KEY).readLock();
+        lock.lock(canonicalLockLeaseSeconds, TimeUnit.SECONDS);
+        try {
+            HeadObjectResponse head = s3Service.headImage(key);
+            if (head == null) {
+                log.warn("Canonical object {} not found for image {}", key, image.getId());
+                return reject(image, "missing object");
+            }
+            // Copy in place (REPLACE metadata) - resets LastModified for the orphan collector
+            s3Service.copyImage(key, key, head.contentType());
+            listingImageRepository.updateContentKey(image.getId(), key, hash);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+        image.setContentHash(hash);
+        return true;
+    }
+
+    private boolean reject(ListingImage image, String reason) {
+        log.warn("Rejecting upload {} for image {}: {}", image.getS3Key(), image.getId(), reason);
+        rejectedCounter.increment();
+        listingImageRepository.deleteById(image.getId());
+        try {
+            s3Service.deleteImage(image.getS3Key());
+        } catch (RuntimeException e) {
+            // Left for the orphan collector
+            log.warn("Failed to delete rejected upload {}: {}", image.getS3Key(), e.getMessage());
+        }
+        return false;
+    }
+
+    private String hashFromCanonicalKey(String key) {
+        String name = key.substring(CANONICAL_PREFIX.length());
+        int dot = name.indexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private enum ImageFormat {
+        JPEG("jpg", "image/jpeg"),
+        PNG("png", "image/png"),
+        GIF("gif", "image/gif"),
+        WEBP("webp", "image/webp"),
+        HEIC("heic", "image/heic");
+
+        private final String extension;
+        private final String contentType;
+
+        ImageFormat(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        static ImageFormat detect(byte[] header) {
+            if (header.length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8
+                    && (header[2] & 0xFF) == 0xFF) {
+                return JPEG;
+            }
+            if (header.length >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N'
+                    && header[3] == 'G') {
+                return PNG;
+            }
+            if (header.length >= 4 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F'
+                    && header[3] == '8') {
+                return GIF;
+            }
+            if (header.length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F'
+                    && header[3] == 'F' && header[8] == 'W' && header[9] == 'E' && header[10] == 'B'
+                    && header[11] == 'P') {
+                return WEBP;
+            }
+            if (header.length >= 12 && header[4] == 'f' && header[5] == 't' && header[6] == 'y'
+                    && header[7] == 'p') {
+                String brand = new String(header, 8, 4, StandardCharsets.US_ASCII);
+                if (brand.startsWith("hei") || brand.startsWith("mif") || brand.startsWith("hev")) {
+                    return HEIC;
+                }
+            }
+            return null;
+        }
+    }
+}
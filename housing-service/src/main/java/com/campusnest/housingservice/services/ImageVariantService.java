@@ -0,0 +1,464 @@
+package com.campusnest.housingservice.services;
+
+import com.campusnest.housingservice.models.ListingImage;
+import com.campusnest.housingservice.repository.HousingListingRepository;
+import com.campusnest.housingservice.repository.ListingImageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Responsive image variants (thumbnail + medium, JPEG + WebP)
+ *
+ * Problem:
+ * List/search cards rendered the full-size upload (often several MB from a phone camera)
+ * through its presigned URL, even on mobile.
+ *
+ * Pipeline:
+ * 1. Listing create/update associates uploaded S3 keys → ListingImage rows
+ * 2. After commit, each image id is queued on a bounded worker pool
+ * 3. Worker validates the upload and moves it to its content-addressed key
+ *    (ImageContentService), then scales it to THUMB/MEDIUM widths, encodes each as JPEG
+ *    and WebP and uploads under listing-images/variants/{thumb|medium}/<hash>.{jpg|webp}
+ *    (skipped when variants of the same content already exist)
+ *    - The object is streamed from S3 into the ImageReader, never buffered as a byte[]
+ *    - Dimensions are read from the header first; anything above max-pixels is not decoded
+ *      (a small file can still declare a huge canvas - "decompression bomb")
+ *    - Large originals are decoded with source subsampling, so the decoded raster stays
+ *      around twice the medium width instead of the full camera resolution
+ * 4. Variant keys are recorded on the row; the listing's updatedAt is bumped and the
+ *    listing cache + search ETags are invalidated (also after a rejected upload, since
+ *    canonicalization may already have changed or removed the row)
+ *
+ * Thumbnails are served on list/search cards, medium variants as ImageInfo.mediumUrl on
+ * the listing detail; the WebP encodings go out alongside as primaryImageWebpUrl /
+ * mediumWebpUrl for clients that can display them. WebP is best-effort: the writer comes
+ * from the webp-imageio plugin (bundled native libwebp), and when it is missing or fails to
+ * load only the JPEG variants are produced and the WebP keys stay null. Until a variant
+ * exists, readers fall back to the original key.
+ *
+ * Retry sweep:
+ * The queue lives in memory, so a full queue or a restart drops work - and the dropped
+ * images would also skip validation and dedup. Every sweep-interval-ms one node (Redisson
+ * lease, same tryLock(0, lease) pattern as ListingExpiryService) pages through rows with
+ * content_hash IS NULL or a missing JPEG variant and queues them, up to the queue's free
+ * capacity. Ids already queued or running on this node are skipped. An image that can be
+ * validated but not scaled (no decoder, above max-pixels, corrupt data) records its
+ * original key as the variant, so the sweep does not pick it up again. Processing is
+ * idempotent, so an image picked up by the sweep on one node and by the after-commit hook
+ * on another only costs duplicate work.
+ */
+@Service
+@Slf4j
+public class ImageVariantService {
+
+    private static final String VARIANT_PREFIX = "listing-images/variants/";
+
+    private static final String SWEEP_LOCK_KEY = "lock:housing-image-variant-sweep";
+
+    private static final String WEBP_CONTENT_TYPE = "image/webp";
+
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private ImageContentService imageContentService;
+
+    @Autowired
+    private ListingImageRepository listingImageRepository;
+
+    @Autowired
+    private HousingListingRepository housingListingRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ListingHttpCacheService listingHttpCacheService;
+
+    @Autowired
+    private ListingChangePublisher listingChangePublisher;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Value("${housing.image-variants.enabled:true}")
+    private boolean enabled;
+
+    @Value("${housing.image-variants.thumbnail-width:320}")
+    private int thumbnailWidth;
+
+    @Value("${housing.image-variants.medium-width:960}")
+    private int mediumWidth;
+
+    @Value("${housing.image-variants.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    @Value("${housing.image-variants.webp-quality:0.75}")
+    private float webpQuality;
+
+    @Value("${housing.image-variants.max-pixels:40000000}")
+    private long maxPixels;
+
+    @Value("${housing.image-variants.sweep-batch-size:200}")
+    private int sweepBatchSize;
+
+    @Value("${housing.image-variants.sweep-lease-seconds:300}")
+    private long sweepLeaseSeconds;
+
+    private final ThreadPoolExecutor executor;
+
+    // Image ids queued or running on this node
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Cleared if the native WebP encoder fails to load
+    private volatile boolean webpAvailable;
+
+    public ImageVariantService(@Value("${housing.image-variants.workers:2}") int workers,
+                               @Value("${housing.image-variants.queue-capacity:500}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variant-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        // Plugins on the application class path (webp-imageio) are not seen by a registry
+        // that was initialised before the fat-jar class loader was in place
+        ImageIO.scanForPlugins();
+        this.webpAvailable = ImageIO.getImageWritersByMIMEType(WEBP_CONTENT_TYPE).hasNext();
+        if (!webpAvailable) {
+            log.warn("No ImageIO WebP writer available, generating JPEG variants only");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Queue variant generation for freshly associated images. Deferred until after
+     * commit so the worker never races the insert it needs to update.
+     */
+    public void generateVariants(List<ListingImage> images) {
+        if (!enabled || images == null || images.isEmpty()) {
+            return;
+        }
+        List<Long> imageIds = images.stream().map(ListingImage::getId).toList();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(imageIds);
+                }
+            });
+        } else {
+            submit(imageIds);
+        }
+    }
+
+    /**
+     * Re-queue images whose after-commit submission was dropped (full queue, restart)
+     */
+    @Scheduled(fixedDelayString = "${housing.image-variants.sweep-interval-ms:300000}",
+               initialDelayString = "${housing.image-variants.sweep-initial-delay-ms:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+
+        RLock lock = redissonClient.getLock(SWEEP_LOCK_KEY);
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(0, sweepLeaseSeconds, TimeUnit.SECONDS);
+            if (!locked) {
+                log.debug("Image variant sweep already running on another node, skipping");
+                return;
+            }
+            int queued = sweepOnce();
+            if (queued > 0) {
+                log.info("Image variant sweep queued {} images", queued);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while acquiring image variant sweep lease");
+        } finally {
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Keyset-pages pending rows into the queue until it is full or none are left
+     *
+     * @return number of images queued
+     */
+    private int sweepOnce() {
+        int queued = 0;
+        long afterId = 0L;
+        while (executor.getQueue().remainingCapacity() > 0) {
+            List<Long> ids = listingImageRepository.findIdsPendingVariants(afterId, PageRequest.of(0, sweepBatchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            for (Long imageId : ids) {
+                if (executor.getQueue().remainingCapacity() == 0) {
+                    return queued;
+                }
+                if (enqueue(imageId)) {
+                    queued++;
+                }
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+        return queued;
+    }
+
+    private void submit(List<Long> imageIds) {
+        for (Long imageId : imageIds) {
+            enqueue(imageId);
+        }
+    }
+
+    /**
+     * @return false if the image is already in flight or the queue is full
+     */
+    private boolean enqueue(Long imageId) {
+        if (!inFlight.add(imageId)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(imageId);
+                } finally {
+                    inFlight.remove(imageId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(imageId);
+            // Still pending in the database - the next sweep picks it up
+            log.warn("Image variant queue full, deferring image {} to the sweep", imageId);
+            return false;
+        }
+    }
+
+    private void process(Long imageId) {
+        ListingImage image = listingImageRepository.findById(imageId).orElse(null);
+        if (image == null) {
+            log.debug("Image {} removed before variants were generated", imageId);
+            return;
+        }
+        Long listingId = listingImageRepository.findListingIdById(imageId);
+
+        try {
+            // Validate + move to the content-addressed key first, so variants are shared too
+            if (!imageContentService.canonicalize(image)) {
+                invalidateListing(listingId);
+                return;
+            }
+
+            String thumbnailKey = variantKey("thumb", image.getS3Key(), "jpg");
+            String mediumKey = variantKey("medium", image.getS3Key(), "jpg");
+            String thumbnailWebpKey = webpAvailable ? variantKey("thumb", image.getS3Key(), "webp") : null;
+            String mediumWebpKey = webpAvailable ? variantKey("medium", image.getS3Key(), "webp") : null;
+
+            if (missing(thumbnailKey) || missing(mediumKey) || missing(thumbnailWebpKey) || missing(mediumWebpKey)) {
+                BufferedImage original = readForScaling(image.getS3Key());
+                if (original == null) {
+                    // Valid image we cannot scale - serve the original, and mark it done for the sweep
+                    thumbnailKey = mediumKey = image.getS3Key();
+                    thumbnailWebpKey = mediumWebpKey = null;
+                } else {
+                    BufferedImage thumbnail = scaleToWidth(original, thumbnailWidth);
+                    BufferedImage medium = scaleToWidth(original, mediumWidth);
+                    s3Service.uploadImage(thumbnailKey, encode(thumbnail, "image/jpeg", jpegQuality), "image/jpeg");
+                    s3Service.uploadImage(mediumKey, encode(medium, "image/jpeg", jpegQuality), "image/jpeg");
+                    thumbnailWebpKey = uploadWebp(thumbnailWebpKey, thumbnail);
+                    mediumWebpKey = uploadWebp(mediumWebpKey, medium);
+                }
+            } else {
+                log.debug("Reusing existing variants for {}", image.getS3Key());
+            }
+
+            if (listingImageRepository.updateVariantKeys(imageId, thumbnailKey, mediumKey,
+                    thumbnailWebpKey, mediumWebpKey) == 0) {
+                return;
+            }
+            invalidateListing(listingId);
+
+            log.debug("Generated variants for image {} ({})", imageId, image.getS3Key());
+        } catch (Exception e) {
+            log.error("Failed to generate variants for image {}: {}", imageId, e.getMessage());
+            // The row may already point at its canonical key
+            invalidateListing(listingId);
+        }
+    }
+
+    private boolean missing(String key) {
+        return key != null && s3Service.headImage(key) == null;
+    }
+
+    /**
+     * @return the key, or null if WebP encoding is unavailable
+     */
+    private String uploadWebp(String key, BufferedImage image) throws IOException {
+        if (key == null || !webpAvailable) {
+            return null;
+        }
+        try {
+            s3Service.uploadImage(key, encode(image, WEBP_CONTENT_TYPE, webpQuality), WEBP_CONTENT_TYPE);
+            return key;
+        } catch (LinkageError e) {
+            // Native libwebp missing for this platform - JPEG only from now on
+            webpAvailable = false;
+            log.warn("WebP encoder unavailable, generating JPEG variants only: {}", e.toString());
+            return null;
+        }
+    }
+
+    private void invalidateListing(Long listingId) {
+        if (listingId != null) {
+            housingListingRepository.touch(listingId, LocalDateTime.now());
+        }
+        Cache listingCache = cacheManager.getCache("housing-listings");
+        if (listingCache != null && listingId != null) {
+            listingCache.evict(listingId);
+        }
+        Cache searchCache = cacheManager.getCache("housing-search");
+        if (searchCache != null) {
+            searchCache.clear();
+        }
+        listingHttpCacheService.bumpSearchGeneration();
+        listingChangePublisher.publish(listingId);
+    }
+
+    /**
+     * Decode the original straight from the S3 stream, checking its declared size first
+     *
+     * @return the (possibly subsampled) image, or null if no ImageIO reader supports the
+     *         format (HEIC), the image exceeds max-pixels or its data cannot be decoded
+     * @throws IOException if the object cannot be read from S3
+     */
+    private BufferedImage readForScaling(String s3Key) throws IOException {
+        try (InputStream in = s3Service.openImage(s3Key);
+             ImageInputStream imageInput = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = imageInput != null ? ImageIO.getImageReaders(imageInput) : null;
+            if (readers == null || !readers.hasNext()) {
+                log.warn("Unsupported image format for S3 key: {}", s3Key);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.warn("Image {} is {}x{}, above {} pixels - not decoded", s3Key, width, height, maxPixels);
+                    return null;
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, width / (mediumWidth * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } catch (IIOException e) {
+                log.warn("Could not decode image {}: {}", s3Key, e.getMessage());
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * listing-images/abc_photo.png → listing-images/variants/thumb/abc_photo.jpg
+     */
+    private String variantKey(String variant, String originalKey, String extension) {
+        String name = originalKey.substring(originalKey.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        return VARIANT_PREFIX + variant + "/" + name + "." + extension;
+    }
+
+    private BufferedImage scaleToWidth(BufferedImage source, int targetWidth) {
+        int width = Math.min(targetWidth, source.getWidth());
+        int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+
+        // JPEG has no alpha channel - flatten onto white (WebP reuses the same raster)
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] encode(BufferedImage image, String contentType, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByMIMEType(contentType).next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam params = writer.getDefaultWriteParam();
+            params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            // JPEG: "JPEG", WebP: "Lossy" / "Lossless" - the first type is the lossy one
+            params.setCompressionType(params.getCompressionTypes()[0]);
+            params.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), params);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+}
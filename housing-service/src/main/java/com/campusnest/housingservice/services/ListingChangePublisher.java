@@ -0,0 +1,64 @@
+package com.campusnest.housingservice.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Listing change events for other services (Redis pub/sub)
+ *
+ * Other services keep local copies of listing DTOs (e.g. messaging-service's profile cache).
+ * Every listing write publishes the affected ids on LISTING_CHANGED_CHANNEL as a
+ * comma-separated message so those copies can be dropped immediately instead of waiting
+ * for their TTL.
+ *
+ * Published after commit, so a subscriber that refetches right away sees the new row.
+ * Delivery is best effort (pub/sub has no replay) - subscribers must still expire entries.
+ */
+@Service
+@Slf4j
+public class ListingChangePublisher {
+
+    public static final String LISTING_CHANGED_CHANNEL = "campusnest:listing-changed";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    public void publish(Long listingId) {
+        if (listingId != null) {
+            publish(List.of(listingId));
+        }
+    }
+
+    public void publish(Collection<Long> listingIds) {
+        if (listingIds.isEmpty()) {
+            return;
+        }
+        String message = listingIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(message);
+                }
+            });
+        } else {
+            send(message);
+        }
+    }
+
+    private void send(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(LISTING_CHANGED_CHANNEL, message);
+        } catch (Exception e) {
+            log.warn("Unable to publish listing change for {}: {}", message, e.getMessage());
+        }
+    }
+}
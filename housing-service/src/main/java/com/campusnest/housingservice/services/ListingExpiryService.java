@@ -0,0 +1,233 @@
+package com.campusnest.housingservice.services;
+
+import com.campusnest.housingservice.models.ArchivedHousingListing;
+import com.campusnest.housingservice.models.HousingListing;
+import com.campusnest.housingservice.repository.ArchivedHousingListingRepository;
+import com.campusnest.housingservice.repository.HousingListingRepository;
+import com.campusnest.housingservice.repository.ListingImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Scheduled expiry and archival of stale listings
+ *
+ * Phase 1 - Expire: active listings whose availableTo is in the past → isActive = false,
+ *           expiredAt = now
+ * Phase 2 - Archive: listings inactive for N months → copied to housing_listings_archive,
+ *           removed (with their images) from the hot tables
+ *
+ * Expired listings stay resolvable: GET /api/housing/{id} answers with a tombstone
+ * (isActive = false, no images) built from the hot row or the archive copy, so
+ * conversations in messaging-service keep their listing context. Only expiredAt marks a
+ * listing as expired - listings deactivated by their owner or an admin stay 404, also
+ * once archived.
+ *
+ * Both scans are served by dedicated indexes (idx_active_available_to, idx_active_updated_at).
+ *
+ * Distributed Lease:
+ * Every node schedules the job, but only the node holding the Redisson lock runs it.
+ * tryLock(0, lease) never waits - other nodes simply skip this run. The lease auto-expires
+ * if the holder dies mid-run, so the next scheduled run on any node can take over.
+ *
+ * Small Batches:
+ * Each batch is its own short transaction (no long-held row locks on housing_listings),
+ * followed by cache eviction for exactly the affected ids.
+ */
+@Service
+@Slf4j
+public class ListingExpiryService {
+
+    private static final String LOCK_KEY = "lock:housing-listing-expiry";
+
+    @Autowired
+    private HousingListingRepository housingListingRepository;
+
+    @Autowired
+    private ListingImageRepository listingImageRepository;
+
+    @Autowired
+    private ArchivedHousingListingRepository archivedHousingListingRepository;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ListingHttpCacheService listingHttpCacheService;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private ListingChangePublisher listingChangePublisher;
+
+    @Value("${housing.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${housing.expiry.batch-size:200}")
+    private int batchSize;
+
+    @Value("${housing.expiry.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    @Value("${housing.expiry.archive-after-months:6}")
+    private int archiveAfterMonths;
+
+    @Value("${housing.expiry.lease-seconds:900}")
+    private long leaseSeconds;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter expiredCounter;
+    private final Counter archivedCounter;
+    private final Timer runTimer;
+    private final AtomicLong lastRunEpochSeconds = new AtomicLong();
+    private final AtomicLong lastRunProcessed = new AtomicLong();
+
+    public ListingExpiryService(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.expiredCounter = Counter.builder("housing.listings.expired")
+                .description("Listings deactivated because availableTo passed")
+                .register(meterRegistry);
+        this.archivedCounter = Counter.builder("housing.listings.archived")
+                .description("Listings moved to housing_listings_archive")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("housing.listings.expiry.duration")
+                .description("Duration of a listing expiry/archival run")
+                .register(meterRegistry);
+        meterRegistry.gauge("housing.listings.expiry.last-run", lastRunEpochSeconds);
+        meterRegistry.gauge("housing.listings.expiry.last-run-processed", lastRunProcessed);
+    }
+
+    @Scheduled(cron = "${housing.expiry.cron:0 15 3 * * *}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+
+        RLock lock = redissonClient.getLock(LOCK_KEY);
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(0, leaseSeconds, TimeUnit.SECONDS);
+            if (!locked) {
+                log.debug("Listing expiry already running on another node, skipping");
+                return;
+            }
+            runTimer.record(this::runOnce);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while acquiring listing expiry lease");
+        } finally {
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * One full pass: expire, then archive. Bounded by max-batches-per-run per phase.
+     */
+    public void runOnce() {
+        long expired = expireListings();
+        long archived = archiveListings();
+
+        lastRunEpochSeconds.set(System.currentTimeMillis() / 1000);
+        lastRunProcessed.set(expired + archived);
+        log.info("Listing expiry run finished: {} expired, {} archived", expired, archived);
+    }
+
+    private long expireListings() {
+        LocalDate today = LocalDate.now();
+        long total = 0;
+
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> expiredIds = housingListingRepository.findExpiredActiveIds(
+                        today, PageRequest.of(0, batchSize));
+                if (!expiredIds.isEmpty()) {
+                    housingListingRepository.expireByIds(expiredIds, LocalDateTime.now());
+                    expiredIds.forEach(availabilityIndex::onListingRemoved);
+                    listingHttpCacheService.bumpSearchGeneration();
+                }
+                return expiredIds;
+            });
+
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            evictListings(ids);
+            expiredCounter.increment(ids.size());
+            total += ids.size();
+            log.debug("Expired batch of {} listings", ids.size());
+        }
+        return total;
+    }
+
+    private long archiveListings() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMonths(archiveAfterMonths);
+        long total = 0;
+
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<HousingListing> listings = housingListingRepository.findInactiveUpdatedBefore(
+                        cutoff, PageRequest.of(0, batchSize));
+                if (listings.isEmpty()) {
+                    return List.<Long>of();
+                }
+
+                archivedHousingListingRepository.saveAll(listings.stream()
+                        .map(ArchivedHousingListing::from)
+                        .collect(Collectors.toList()));
+
+                List<Long> listingIds = listings.stream().map(HousingListing::getId).collect(Collectors.toList());
+                listingImageRepository.deleteByListingIdIn(listingIds);
+                housingListingRepository.deleteByIdIn(listingIds);
+                listingHttpCacheService.bumpSearchGeneration();
+                return listingIds;
+            });
+
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            evictListings(ids);
+            archivedCounter.increment(ids.size());
+            total += ids.size();
+            log.debug("Archived batch of {} listings", ids.size());
+        }
+        return total;
+    }
+
+    private void evictListings(List<Long> ids) {
+        Cache listingCache = cacheManager.getCache("housing-listings");
+        if (listingCache != null) {
+            ids.forEach(listingCache::evict);
+        }
+        listingChangePublisher.publish(ids);
+        Cache searchCache = cacheManager.getCache("housing-search");
+        if (searchCache != null) {
+            searchCache.clear();
+        }
+    }
+}
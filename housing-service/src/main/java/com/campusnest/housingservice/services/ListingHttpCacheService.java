@@ -0,0 +1,181 @@
+package com.campusnest.housingservice.services;
+
+import com.campusnest.housingservice.models.HousingListing;
+import com.campusnest.housingservice.models.ListingImage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP Caching for public listing reads (ETag + Cache-Control)
+ *
+ * Conditional GET Strategy:
+ * - Listing detail: ETag derived from listing id + updatedAt + the state of its images
+ *   (keys, variants, order), so it changes on every write including image-only ones
+ * - List/search endpoints: ETag derived from a shared "search generation" counter in Redis
+ *   plus the query parameters. Any write to any listing bumps the generation, which
+ *   invalidates every list ETag at once (same semantics as evicting "housing-search").
+ * - Both carry the current signing epoch: bodies embed presigned S3 URLs that expire
+ *   (S3Service.IMAGE_URL_TTL), so a 304 must never keep a client on URLs that are about
+ *   to die. The epoch is at most half the URL lifetime, which leaves every URL served
+ *   under a still-valid ETag at least that long to live.
+ *
+ * Responses are Cache-Control: private - the signed URLs are bearer credentials and must
+ * not be stored by shared caches (gateway/CDN) and handed to other clients.
+ *
+ * Why this works:
+ * A polling client sending If-None-Match gets a 304 with an empty body after a single
+ * Redis GET (lists) or a cached listing lookup (detail) - no DB query, no S3 URL signing,
+ * no JSON serialization of the full page.
+ */
+@Service
+@Slf4j
+public class ListingHttpCacheService {
+
+    private static final String SEARCH_GENERATION_KEY = "housing:search-generation";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${housing.http-cache.listing-max-age-seconds:60}")
+    private long listingMaxAgeSeconds;
+
+    @Value("${housing.http-cache.search-max-age-seconds:15}")
+    private long searchMaxAgeSeconds;
+
+    @Value("${housing.http-cache.signing-epoch-seconds:43200}")
+    private long signingEpochSeconds;
+
+    /**
+     * Current search generation. Falls back to 0 if Redis is unavailable,
+     * callers should treat a null ETag as "do not cache".
+     */
+    public Long currentSearchGeneration() {
+        try {
+            String value = stringRedisTemplate.opsForValue().get(SEARCH_GENERATION_KEY);
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (Exception e) {
+            log.warn("Unable to read search generation from Redis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Invalidate all list/search ETags. Call on every listing write.
+     *
+     * Inside a transaction the bump is deferred until after commit; otherwise a reader
+     * could pick up the new generation, still see the old rows and pin them under the
+     * new ETag until the next write.
+     */
+    public void bumpSearchGeneration() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    incrementSearchGeneration();
+                }
+            });
+        } else {
+            incrementSearchGeneration();
+        }
+    }
+
+    private void incrementSearchGeneration() {
+        try {
+            Long generation = stringRedisTemplate.opsForValue().increment(SEARCH_GENERATION_KEY);
+            log.debug("Search generation bumped to {}", generation);
+        } catch (Exception e) {
+            log.warn("Unable to bump search generation in Redis: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Strong ETag for a single listing, e.g. "l42-1718035200123-39735-5be1a0c2d47f9e31"
+     */
+    public String listingETag(HousingListing listing) {
+        long version = listing.getUpdatedAt() != null
+                ? listing.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli()
+                : 0L;
+        return "\"l" + listing.getId() + "-" + version + "-" + signingEpoch()
+                + "-" + imageVersion(listing.getImages()) + "\"";
+    }
+
+    /**
+     * Strong ETag for a list/search page, e.g. "s17-3f2a9c01b4d6e8aa"
+     *
+     * @param generation Current search generation (null means caching is disabled)
+     * @param queryParts All parameters that influence the response body
+     * @return ETag, or null if the generation is unknown
+     */
+    public String searchETag(Long generation, Object... queryParts) {
+        if (generation == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (Object part : queryParts) {
+            query.append(part).append('|');
+        }
+        return "\"s" + generation + "-" + signingEpoch() + "-" + shortHash(query.toString()) + "\"";
+    }
+
+    public CacheControl listingCacheControl() {
+        return CacheControl.maxAge(listingMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate();
+    }
+
+    public CacheControl searchCacheControl() {
+        return CacheControl.maxAge(searchMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate();
+    }
+
+    /**
+     * Index of the current URL signing window, never longer than half the URL lifetime
+     */
+    private long signingEpoch() {
+        long epochMillis = Math.min(TimeUnit.SECONDS.toMillis(signingEpochSeconds),
+                S3Service.IMAGE_URL_TTL.toMillis() / 2);
+        return System.currentTimeMillis() / Math.max(1L, epochMillis);
+    }
+
+    /**
+     * Hash of everything about the images that ends up in a response body
+     */
+    private String imageVersion(List<ListingImage> images) {
+        if (images == null || images.isEmpty()) {
+            return "0";
+        }
+        StringBuilder state = new StringBuilder();
+        images.stream()
+                .sorted(Comparator.comparing(ListingImage::getId, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .forEach(image -> state.append(image.getId()).append(':')
+                        .append(image.getS3Key()).append(':')
+                        .append(image.getThumbnailKey()).append(':')
+                        .append(image.getMediumKey()).append(':')
+                        .append(image.getThumbnailWebpKey()).append(':')
+                        .append(image.getMediumWebpKey()).append(':')
+                        .append(image.getIsPrimary()).append(':')
+                        .append(image.getDisplayOrder()).append('|'));
+        return shortHash(state.toString());
+    }
+
+    private String shortHash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
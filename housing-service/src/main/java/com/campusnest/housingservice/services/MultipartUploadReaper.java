@@ -0,0 +1,70 @@
+package com.campusnest.housingservice.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsResponse;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Abandoned multipart upload reaper
+ *
+ * Problem:
+ * Parts of an upload that is never completed or aborted stay in the bucket (and are
+ * billed) indefinitely, but are invisible to ListObjects.
+ *
+ * Abort is idempotent, so every node may run this without coordination - the worst
+ * case is two nodes aborting the same upload.
+ */
+@Service
+@Slf4j
+public class MultipartUploadReaper {
+
+    @Autowired
+    private S3Service s3Service;
+
+    @Value("${housing.multipart.reaper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${housing.multipart.reaper.max-age-hours:24}")
+    private long maxAgeHours;
+
+    @Scheduled(fixedDelayString = "${housing.multipart.reaper.interval-ms:3600000}",
+            initialDelayString = "${housing.multipart.reaper.interval-ms:3600000}")
+    public void reapAbandonedUploads() {
+        if (!enabled) {
+            return;
+        }
+
+        Instant cutoff = Instant.now().minus(Duration.ofHours(maxAgeHours));
+        String keyMarker = null;
+        String uploadIdMarker = null;
+        int aborted = 0;
+
+        try {
+            ListMultipartUploadsResponse page;
+            do {
+                page = s3Service.listMultipartUploads(keyMarker, uploadIdMarker);
+                for (MultipartUpload upload : page.uploads()) {
+                    if (upload.initiated() != null && upload.initiated().isBefore(cutoff)) {
+                        s3Service.abortMultipartUpload(upload.key(), upload.uploadId());
+                        aborted++;
+                    }
+                }
+                keyMarker = page.nextKeyMarker();
+                uploadIdMarker = page.nextUploadIdMarker();
+            } while (Boolean.TRUE.equals(page.isTruncated()));
+        } catch (Exception e) {
+            log.error("Multipart upload reaper failed: {}", e.getMessage());
+        }
+
+        if (aborted > 0) {
+            log.info("Aborted {} abandoned multipart uploads older than {}h", aborted, maxAgeHours);
+        }
+    }
+}
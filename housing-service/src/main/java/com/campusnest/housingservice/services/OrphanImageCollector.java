@@ -0,0 +1,216 @@
+package com.campusnest.housingservice.services;
+
+import com.campusnest.housingservice.repository.ListingImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Orphaned S3 object garbage collector
+ *
+ * Orphans come from:
+ * - updateImages / hardDeleteListing / archival removing ListingImage rows but not objects
+ * - presigned uploads that were never attached to a listing
+ * - variants whose original row is gone
+ *
+ * Reconciliation (streaming, memory bounded by one page):
+ * 1. ListObjectsV2 under listing-images/, one page (<= 1000 keys) at a time
+ * 2. Skip objects younger than the grace period (uploads still being attached)
+ * 3. One indexed lookup per page: which of these keys does listing_images still reference
+ *    (as s3_key, thumbnail_key or medium_key)?
+ * 4. Unreferenced keys → a single DeleteObjects call for the page
+ *
+ * The DB lookup happens right before the delete, so a key attached since the
+ * listing was fetched is seen as referenced. The grace period covers the remaining
+ * window between upload and listing create.
+ *
+ * Canonical objects (listing-images/sha256/) are old by design and re-attached whenever
+ * the same content is uploaded again. Steps 3-4 therefore run under the write side of
+ * ImageContentService.CANONICAL_LOCK_KEY, so a reuse can never slip in between the
+ * reference check and the delete.
+ */
+@Service
+@Slf4j
+public class OrphanImageCollector {
+
+    private static final String LOCK_KEY = "lock:housing-orphan-image-gc";
+
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private ListingImageRepository listingImageRepository;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Value("${housing.orphan-gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${housing.orphan-gc.dry-run:true}")
+    private boolean dryRun;
+
+    @Value("${housing.orphan-gc.grace-period-hours:48}")
+    private long gracePeriodHours;
+
+    @Value("${housing.orphan-gc.page-size:1000}")
+    private int pageSize;
+
+    @Value("${housing.orphan-gc.lease-seconds:3600}")
+    private long leaseSeconds;
+
+    @Value("${housing.orphan-gc.page-lock-wait-seconds:30}")
+    private long pageLockWaitSeconds;
+
+    @Value("${housing.orphan-gc.page-lock-lease-seconds:120}")
+    private long pageLockLeaseSeconds;
+
+    private final Counter scannedCounter;
+    private final Counter orphanCounter;
+    private final Counter deletedCounter;
+    private final Counter failedCounter;
+    private final Timer runTimer;
+    private final AtomicLong lastRunOrphans = new AtomicLong();
+
+    public OrphanImageCollector(MeterRegistry meterRegistry) {
+        this.scannedCounter = Counter.builder("housing.s3.gc.scanned")
+                .description("S3 objects examined by the orphan collector")
+                .register(meterRegistry);
+        this.orphanCounter = Counter.builder("housing.s3.gc.orphans")
+                .description("Unreferenced S3 objects older than the grace period")
+                .register(meterRegistry);
+        this.deletedCounter = Counter.builder("housing.s3.gc.deleted")
+                .description("Orphaned S3 objects deleted")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("housing.s3.gc.failed")
+                .description("Orphaned S3 objects S3 failed to delete")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("housing.s3.gc.duration")
+                .description("Duration of an orphan collection run")
+                .register(meterRegistry);
+        meterRegistry.gauge("housing.s3.gc.last-run-orphans", lastRunOrphans);
+    }
+
+    @Scheduled(cron = "${housing.orphan-gc.cron:0 45 4 * * *}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+
+        RLock lock = redissonClient.getLock(LOCK_KEY);
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(0, leaseSeconds, TimeUnit.SECONDS);
+            if (!locked) {
+                log.debug("Orphan image collection already running on another node, skipping");
+                return;
+            }
+            runTimer.record(this::runOnce);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while acquiring orphan image collection lease");
+        } finally {
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    public void runOnce() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(gracePeriodHours));
+        String continuationToken = null;
+        long scanned = 0;
+        long orphans = 0;
+
+        try {
+            ListObjectsV2Response page;
+            do {
+                // <= 1000 keeps each page within a single DeleteObjects call
+                page = s3Service.listImages(continuationToken, Math.min(pageSize, 1000));
+                scanned += page.contents().size();
+                orphans += collectPage(page.contents(), cutoff);
+                continuationToken = page.nextContinuationToken();
+            } while (Boolean.TRUE.equals(page.isTruncated()));
+        } catch (Exception e) {
+            log.error("Orphan image collection aborted after {} objects: {}", scanned, e.getMessage());
+        }
+
+        scannedCounter.increment(scanned);
+        lastRunOrphans.set(orphans);
+        log.info("Orphan image collection finished{}: {} objects scanned, {} orphans",
+                dryRun ? " (dry run)" : "", scanned, orphans);
+    }
+
+    private int collectPage(List<S3Object> objects, Instant cutoff) {
+        Set<String> candidates = new HashSet<>();
+        for (S3Object object : objects) {
+            if (object.lastModified() != null && object.lastModified().isBefore(cutoff)) {
+                candidates.add(object.key());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        RLock pageLock = redissonClient.getReadWriteLock(ImageContentService.CANONICAL_LOCK_KEY).writeLock();
+        boolean locked = false;
+        try {
+            locked = pageLock.tryLock(pageLockWaitSeconds, pageLockLeaseSeconds, TimeUnit.SECONDS);
+            if (!locked) {
+                log.warn("Image canonicalization busy, skipping a page of {} candidates", candidates.size());
+                return 0;
+            }
+            return deleteUnreferenced(candidates);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            if (locked && pageLock.isHeldByCurrentThread()) {
+                pageLock.unlock();
+            }
+        }
+    }
+
+    private int deleteUnreferenced(Set<String> candidates) {
+        for (Object[] row : listingImageRepository.findReferencedKeys(candidates)) {
+            for (Object key : row) {
+                candidates.remove(key);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        orphanCounter.increment(candidates.size());
+        if (dryRun) {
+            candidates.forEach(key -> log.info("Orphaned S3 object (dry run): {}", key));
+            return candidates.size();
+        }
+
+        List<String> failed = s3Service.deleteImages(new ArrayList<>(candidates));
+        deletedCounter.increment(candidates.size() - failed.size());
+        if (!failed.isEmpty()) {
+            failedCounter.increment(failed.size());
+            log.warn("Failed to delete {} orphaned S3 objects, e.g. {}", failed.size(), failed.get(0));
+        }
+        return candidates.size();
+    }
+}
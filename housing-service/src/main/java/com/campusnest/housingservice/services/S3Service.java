@@ -3,9 +3,8 @@ package com.campusnest.housingservice.services;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -13,8 +12,13 @@ import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequ
 import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.UploadPartPresignRequest;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -23,29 +27,23 @@ public class S3Service {
     @Autowired
     private S3Client s3Client;
     
+    @Autowired
+    private S3Presigner presigner;
+    
     @Value("${aws.s3.bucket-name}")
     private String bucketName;
     
-    @Value("${aws.s3.region}")
-    private String region;
-    
-    @Value("${aws.access-key-id}")
-    private String accessKeyId;
-    
-    @Value("${aws.secret-access-key}")
-    private String secretAccessKey;
+    private static final String UPLOAD_PREFIX = "listing-images/";
+
+    // Lifetime of image URLs embedded in listing responses (24 hour access - industry standard)
+    public static final Duration IMAGE_URL_TTL = Duration.ofHours(24);
     
     public String generatePresignedUploadUrl(String fileName, String contentType) {
-        String key = "listing-images/" + UUID.randomUUID() + "_" + fileName;
+        requireImageContentType(contentType);
+        String key = UPLOAD_PREFIX + UUID.randomUUID() + "_" + fileName;
         System.out.println("Generating presigned URL with contentType: " + contentType);
         
-        AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKeyId, secretAccessKey);
-        
-        try (S3Presigner presigner = S3Presigner.builder()
-                .region(Region.of(region))
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .build()) {
-            
+        try {
             PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                     .bucket(bucketName)
                     .key(key)
@@ -59,6 +57,8 @@ public class S3Service {
             
             PresignedPutObjectRequest presignedRequest = presigner.presignPutObject(presignRequest);
             return presignedRequest.url().toString();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to generate upload URL: " + e.getMessage());
         }
     }
     
@@ -68,20 +68,14 @@ public class S3Service {
     }
     
     public String getSignedImageUrl(String s3Key) {
-        AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKeyId, secretAccessKey);
-        
-        try (S3Presigner presigner = S3Presigner.builder()
-                .region(Region.of(region))
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .build()) {
-            
+        try {
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                     .bucket(bucketName)
                     .key(s3Key)
                     .build();
             
             GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
-                    .signatureDuration(Duration.ofHours(24)) // 24 hour access - industry standard
+                    .signatureDuration(IMAGE_URL_TTL)
                     .getObjectRequest(getObjectRequest)
                     .build();
             
@@ -108,4 +102,254 @@ public class S3Service {
             throw new RuntimeException("Failed to delete image from S3: " + e.getMessage());
         }
     }
+    
+    public ResponseInputStream<GetObjectResponse> openImage(String s3Key) {
+        try {
+            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .build();
+            
+            return s3Client.getObject(getObjectRequest);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to open image from S3: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * @return Object metadata, or null if the key does not exist
+     */
+    public HeadObjectResponse headImage(String s3Key) {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read image metadata from S3: " + e.getMessage());
+        }
+    }
+    
+    public void copyImage(String sourceKey, String destinationKey, String contentType) {
+        try {
+            CopyObjectRequest copyObjectRequest = CopyObjectRequest.builder()
+                    .sourceBucket(bucketName)
+                    .sourceKey(sourceKey)
+                    .destinationBucket(bucketName)
+                    .destinationKey(destinationKey)
+                    .metadataDirective(MetadataDirective.REPLACE)
+                    .contentType(contentType)
+                    .cacheControl("public, max-age=31536000, immutable")
+                    .build();
+            
+            s3Client.copyObject(copyObjectRequest);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to copy image in S3: " + e.getMessage());
+        }
+    }
+    
+    public void uploadImage(String s3Key, byte[] content, String contentType) {
+        try {
+            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .contentType(contentType)
+                    .cacheControl("public, max-age=31536000, immutable")
+                    .build();
+            
+            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(content));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to upload image to S3: " + e.getMessage());
+        }
+    }
+    
+    // ==================== Multipart Upload ====================
+    // Large photos are uploaded in parts (min 5 MB each except the last) directly to S3.
+    // Parts can be sent in parallel and a failed part is retried alone; a client that
+    // lost its state can list the finished parts and continue from there.
+    
+    public CreateMultipartUploadResponse initiateMultipartUpload(String fileName, String contentType) {
+        requireImageContentType(contentType);
+        String key = UPLOAD_PREFIX + UUID.randomUUID() + "_" + fileName;
+        
+        try {
+            CreateMultipartUploadRequest request = CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .build();
+            
+            return s3Client.createMultipartUpload(request);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initiate multipart upload: " + e.getMessage());
+        }
+    }
+    
+    public List<String> generatePresignedPartUrls(String s3Key, String uploadId, int startPart, int partCount) {
+        requireUploadKey(s3Key);
+        List<String> urls = new ArrayList<>(partCount);
+        
+        try {
+            for (int partNumber = startPart; partNumber < startPart + partCount; partNumber++) {
+                UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                        .bucket(bucketName)
+                        .key(s3Key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .build();
+                
+                UploadPartPresignRequest presignRequest = UploadPartPresignRequest.builder()
+                        .signatureDuration(Duration.ofHours(1))
+                        .uploadPartRequest(uploadPartRequest)
+                        .build();
+                
+                urls.add(presigner.presignUploadPart(presignRequest).url().toString());
+            }
+            return urls;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to generate part upload URLs: " + e.getMessage());
+        }
+    }
+    
+    public List<Part> listUploadedParts(String s3Key, String uploadId) {
+        requireUploadKey(s3Key);
+        
+        try {
+            ListPartsRequest request = ListPartsRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .build();
+            
+            List<Part> parts = new ArrayList<>();
+            s3Client.listPartsPaginator(request).parts().forEach(parts::add);
+            return parts;
+        } catch (NoSuchUploadException e) {
+            throw new RuntimeException("Multipart upload not found or already completed");
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to list uploaded parts: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * @param parts Part numbers + ETags reported by the client, or empty to use the
+     *              parts S3 has recorded for this upload
+     */
+    public void completeMultipartUpload(String s3Key, String uploadId, List<CompletedPart> parts) {
+        requireUploadKey(s3Key);
+        
+        List<CompletedPart> completedParts = new ArrayList<>(parts != null && !parts.isEmpty()
+                ? parts
+                : listUploadedParts(s3Key, uploadId).stream()
+                        .map(part -> CompletedPart.builder()
+                                .partNumber(part.partNumber())
+                                .eTag(part.eTag())
+                                .build())
+                        .toList());
+        if (completedParts.isEmpty()) {
+            throw new RuntimeException("No uploaded parts to complete");
+        }
+        completedParts.sort(Comparator.comparing(CompletedPart::partNumber));
+        
+        try {
+            CompleteMultipartUploadRequest request = CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build();
+            
+            s3Client.completeMultipartUpload(request);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to complete multipart upload: " + e.getMessage());
+        }
+    }
+    
+    public void abortMultipartUpload(String s3Key, String uploadId) {
+        requireUploadKey(s3Key);
+        
+        try {
+            AbortMultipartUploadRequest request = AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .build();
+            
+            s3Client.abortMultipartUpload(request);
+        } catch (NoSuchUploadException e) {
+            // Already aborted or completed - nothing to clean up
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to abort multipart upload: " + e.getMessage());
+        }
+    }
+    
+    public ListMultipartUploadsResponse listMultipartUploads(String keyMarker, String uploadIdMarker) {
+        ListMultipartUploadsRequest request = ListMultipartUploadsRequest.builder()
+                .bucket(bucketName)
+                .prefix(UPLOAD_PREFIX)
+                .keyMarker(keyMarker)
+                .uploadIdMarker(uploadIdMarker)
+                .build();
+        
+        return s3Client.listMultipartUploads(request);
+    }
+    
+    private void requireImageContentType(String contentType) {
+        if (contentType == null || !contentType.toLowerCase().startsWith("image/")) {
+            throw new IllegalArgumentException("Only image uploads are allowed, got content type: " + contentType);
+        }
+    }
+    
+    private void requireUploadKey(String s3Key) {
+        // Part URLs are signed for any key we are given - never outside the upload prefix
+        if (s3Key == null || !s3Key.startsWith(UPLOAD_PREFIX) || s3Key.contains("..")) {
+            throw new IllegalArgumentException("Invalid S3 key for upload: " + s3Key);
+        }
+    }
+    
+    // ==================== Bulk Maintenance ====================
+    
+    public ListObjectsV2Response listImages(String continuationToken, int pageSize) {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(UPLOAD_PREFIX)
+                .maxKeys(pageSize)
+                .continuationToken(continuationToken)
+                .build();
+        
+        return s3Client.listObjectsV2(request);
+    }
+    
+    /**
+     * Delete up to 1000 keys in a single DeleteObjects call
+     *
+     * @return Keys S3 failed to delete
+     */
+    public List<String> deleteImages(Collection<String> s3Keys) {
+        if (s3Keys.isEmpty()) {
+            return List.of();
+        }
+        if (s3Keys.size() > 1000) {
+            throw new IllegalArgumentException("DeleteObjects accepts at most 1000 keys");
+        }
+        
+        try {
+            List<ObjectIdentifier> objects = s3Keys.stream()
+                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                    .toList();
+            
+            DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(Delete.builder().objects(objects).quiet(true).build())
+                    .build();
+            
+            return s3Client.deleteObjects(request).errors().stream()
+                    .map(S3Error::key)
+                    .toList();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to delete images from S3: " + e.getMessage());
+        }
+    }
 }
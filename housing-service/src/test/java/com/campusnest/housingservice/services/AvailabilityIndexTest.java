@@ -0,0 +1,134 @@
+package com.campusnest.housingservice.services;
+
+import com.campusnest.housingservice.models.HousingListing;
+import com.campusnest.housingservice.repository.HousingListingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AvailabilityIndexTest {
+
+    private static final LocalDate BASE = LocalDate.of(2025, 1, 1);
+
+    private HousingListingRepository repository;
+
+    private AvailabilityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(HousingListingRepository.class);
+        index = new AvailabilityIndex();
+        ReflectionTestUtils.setField(index, "housingListingRepository", repository);
+        ReflectionTestUtils.setField(index, "enabled", true);
+    }
+
+    @Test
+    void findsOverlappingWindowsIncludingLongLivedAndLargeIds() {
+        long largeId = Integer.MAX_VALUE + 10L;
+        build(List.<Object[]>of(
+                row(1L, BASE, BASE.plusDays(30)),
+                row(2L, BASE.plusMonths(3), BASE.plusMonths(4)),
+                row(3L, BASE.minusYears(5), BASE.plusYears(5)),
+                row(largeId, BASE.plusDays(10), BASE.plusDays(20))));
+
+        assertThat(index.findOverlapping(BASE.plusDays(15), BASE.plusDays(16)))
+                .containsExactlyInAnyOrder(1L, 3L, largeId);
+        assertThat(index.findOverlapping(BASE.plusMonths(3).plusDays(5), BASE.plusMonths(3).plusDays(6)))
+                .containsExactlyInAnyOrder(2L, 3L);
+        // Window boundaries are inclusive
+        assertThat(index.findOverlapping(BASE.plusDays(30), BASE.plusDays(30))).contains(1L);
+        assertThat(index.findOverlapping(BASE.plusDays(31), BASE.plusDays(31))).doesNotContain(1L);
+    }
+
+    @Test
+    void appliesChangesAndRemovals() {
+        long largeId = Integer.MAX_VALUE + 10L;
+        build(List.<Object[]>of(row(1L, BASE, BASE.plusDays(30)), row(largeId, BASE, BASE.plusDays(30))));
+
+        HousingListing moved = new HousingListing();
+        moved.setId(1L);
+        moved.setIsActive(true);
+        moved.setAvailableFrom(BASE.plusMonths(6));
+        moved.setAvailableTo(BASE.plusMonths(7));
+        index.onListingChanged(moved);
+        index.onListingRemoved(largeId);
+
+        assertThat(index.findOverlapping(BASE.plusDays(1), BASE.plusDays(2))).isEmpty();
+        assertThat(index.findOverlapping(BASE.plusMonths(6), BASE.plusMonths(6))).containsExactly(1L);
+    }
+
+    @Test
+    void versionChangesWithEveryAppliedChange() {
+        assertThat(index.version()).isEqualTo(-1L);
+        build(List.<Object[]>of(row(1L, BASE, BASE.plusDays(30))));
+        long built = index.version();
+
+        index.onListingRemoved(1L);
+
+        assertThat(index.version()).isGreaterThan(built);
+    }
+
+    /**
+     * Timing evidence for the index: 100k listings, 500 one-month queries, compared with
+     * the linear overlap check the database otherwise falls back to. Results must match.
+     */
+    @Test
+    void matchesLinearScanOnLargeData() {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>();
+        for (long id = 1; id <= 100_000; id++) {
+            LocalDate from = BASE.plusDays(random.nextInt(3 * 365));
+            rows.add(row(id, from, from.plusDays(30 + random.nextInt(330))));
+        }
+        build(rows);
+
+        List<LocalDate> queries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            queries.add(BASE.plusDays(random.nextInt(4 * 365)));
+        }
+
+        long indexNanos = 0;
+        long scanNanos = 0;
+        for (LocalDate from : queries) {
+            LocalDate to = from.plusDays(30);
+
+            long start = System.nanoTime();
+            Set<Long> indexed = index.findOverlapping(from, to);
+            indexNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Set<Long> scanned = new HashSet<>();
+            for (Object[] row : rows) {
+                if (!((LocalDate) row[1]).isAfter(to) && !((LocalDate) row[2]).isBefore(from)) {
+                    scanned.add((Long) row[0]);
+                }
+            }
+            scanNanos += System.nanoTime() - start;
+
+            assertThat(indexed).isEqualTo(scanned);
+        }
+
+        System.out.printf("AvailabilityIndex: %d queries over %d listings - index %.3f ms/query, linear scan %.3f ms/query%n",
+                queries.size(), rows.size(), indexNanos / 1e6 / queries.size(), scanNanos / 1e6 / queries.size());
+    }
+
+    private void build(List<Object[]> rows) {
+        when(repository.findActiveAvailabilityWindows()).thenReturn(rows);
+        index.rebuild();
+    }
+
+    private static Object[] row(Long id, LocalDate from, LocalDate to) {
+        return new Object[]{id, from, to};
+    }
+}
@@ -0,0 +1,403 @@
+package com.campusnest.messagingservice.clients;
+
+import com.campusnest.messagingservice.exceptions.ServiceUnavailableException;
+import feign.FeignException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Resilience around remote (Feign) calls - one guard per downstream service
+ *
+ * Problem:
+ * A slow housing-service held request threads for the full Feign read timeout on every
+ * call, so one slow dependency stalled all of messaging-service.
+ *
+ * Per service:
+ * - Semaphore bulkhead: at most max-concurrent callers wait on the service, extra callers
+ *   fail fast instead of queueing. The permit is held until every attempt of the call has
+ *   finished, so abandoned requests still count against the service.
+ * - Circuit breaker: opens on failure rate or slow-call rate, then rejects immediately
+ *   until a few half-open probes succeed (4xx responses are not failures)
+ * - Adaptive deadline: observed p99 × multiplier, clamped to [timeout-min, timeout-max].
+ *   Until enough samples exist the maximum is used.
+ * - Optional hedging: if the first attempt has not answered after the observed p95,
+ *   a second identical request is sent. The load balancer round-robins, so it normally
+ *   reaches another Eureka instance. The first successful answer wins.
+ *   Only used for idempotent reads. If the hedge cannot be started (no attempt slot,
+ *   executor full) the call keeps waiting on the first attempt until the deadline.
+ * - Attempts still running when the call returns (deadline passed, losing hedge) are
+ *   cancelled with an interrupt; attempts still queued never start.
+ *
+ * Every rejection (open circuit, full bulkhead, deadline) surfaces as
+ * ServiceUnavailableException, which callers turn into partial DTOs or a 503.
+ * Breaker/bulkhead state is exported through the resilience4j Micrometer binders.
+ */
+@Component
+@Slf4j
+public class RemoteCallGuard {
+
+    private static final long MIN_SAMPLES_FOR_ADAPTIVE_TIMEOUT = 50;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Value("${messaging.remote-calls.max-concurrent:20}")
+    private int maxConcurrent;
+
+    @Value("${messaging.remote-calls.timeout-min-ms:200}")
+    private long timeoutMinMs;
+
+    @Value("${messaging.remote-calls.timeout-max-ms:3000}")
+    private long timeoutMaxMs;
+
+    @Value("${messaging.remote-calls.timeout-p99-multiplier:2.0}")
+    private double timeoutMultiplier;
+
+    @Value("${messaging.remote-calls.hedging-enabled:false}")
+    private boolean hedgingEnabled;
+
+    @Value("${messaging.remote-calls.hedge-min-delay-ms:50}")
+    private long hedgeMinDelayMs;
+
+    @Value("${messaging.remote-calls.circuit-breaker.failure-rate-threshold:50}")
+    private float failureRateThreshold;
+
+    @Value("${messaging.remote-calls.circuit-breaker.wait-in-open-seconds:10}")
+    private long waitInOpenSeconds;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    public RemoteCallGuard(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(50)
+                .minimumNumberOfCalls(20)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(80)
+                .slowCallDurationThreshold(Duration.ofMillis(timeoutMaxMs))
+                .waitDurationInOpenState(Duration.ofSeconds(waitInOpenSeconds))
+                .permittedNumberOfCallsInHalfOpenState(5)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .recordException(RemoteCallGuard::isFailure)
+                .build());
+
+        bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrent)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        guards.values().forEach(guard -> guard.executor.shutdownNow());
+    }
+
+    /**
+     * Run an idempotent remote read for the given service under its breaker, bulkhead
+     * and adaptive deadline. FeignExceptions (e.g. 404) from the call itself propagate.
+     */
+    public <T> T call(String service, Supplier<T> remoteCall) {
+        Guard guard = guards.computeIfAbsent(service, this::createGuard);
+        try {
+            guard.bulkhead.acquirePermission();
+        } catch (BulkheadFullException e) {
+            guard.rejected("bulkhead_full").increment();
+            throw new ServiceUnavailableException(service, e);
+        }
+        Permit permit = new Permit(guard.bulkhead);
+        try {
+            return guard.circuitBreaker.executeSupplier(() -> guard.execute(remoteCall, permit));
+        } catch (CallNotPermittedException e) {
+            guard.rejected("circuit_open").increment();
+            throw new ServiceUnavailableException(service, e);
+        } finally {
+            permit.release();
+        }
+    }
+
+    private Guard createGuard(String service) {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(service);
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                log.warn("Circuit breaker for {}: {}", service, event.getStateTransition()));
+
+        ExecutorService executor;
+        Semaphore slots = null;
+        if (virtualThreads) {
+            // Same bound as the platform pool: one attempt plus one hedge per bulkhead permit
+            executor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("remote-" + service + "-", 0).factory());
+            slots = new Semaphore(maxConcurrent * 2);
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    maxConcurrent * 2, maxConcurrent * 2, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(maxConcurrent),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "remote-" + service + "-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+
+        Timer latency = Timer.builder("messaging.remote.calls")
+                .description("Latency of successful remote call attempts")
+                .tag("service", service)
+                .publishPercentiles(0.95, 0.99)
+                .register(meterRegistry);
+        Counter hedges = Counter.builder("messaging.remote.hedges")
+                .description("Second requests sent because the first was slower than p95")
+                .tag("service", service)
+                .register(meterRegistry);
+
+        return new Guard(service, circuitBreaker, bulkheadRegistry.bulkhead(service), executor, slots,
+                latency, hedges);
+    }
+
+    private static boolean isFailure(Throwable throwable) {
+        // The service answered - a client error is not a sign of an unhealthy dependency
+        return !(throwable instanceof FeignException feign && feign.status() >= 400 && feign.status() < 500);
+    }
+
+    /**
+     * One bulkhead permit shared by the caller and its attempts - released by the last holder
+     */
+    private static final class Permit {
+        private final Bulkhead bulkhead;
+        private final AtomicInteger holders = new AtomicInteger(1);
+
+        Permit(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        void hold() {
+            holders.incrementAndGet();
+        }
+
+        void release() {
+            if (holders.decrementAndGet() == 0) {
+                bulkhead.onComplete();
+            }
+        }
+    }
+
+    /**
+     * A submitted attempt - whichever of the task and cancel() claims it first runs release
+     */
+    private record Attempt(Future<?> future, AtomicBoolean claimed, Runnable release) {
+
+        void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                // Never started - the task will not run, so its hold is released here
+                release.run();
+            }
+            future.cancel(true);
+        }
+    }
+
+    private class Guard {
+        private final String service;
+        private final CircuitBreaker circuitBreaker;
+        private final Bulkhead bulkhead;
+        private final ExecutorService executor;
+        // Bounds virtual-thread attempts (null for the platform pool, which is bounded itself)
+        private final Semaphore slots;
+        private final Timer latency;
+        private final Counter hedges;
+
+        Guard(String service, CircuitBreaker circuitBreaker, Bulkhead bulkhead,
+              ExecutorService executor, Semaphore slots, Timer latency, Counter hedges) {
+            this.service = service;
+            this.circuitBreaker = circuitBreaker;
+            this.bulkhead = bulkhead;
+            this.executor = executor;
+            this.slots = slots;
+            this.latency = latency;
+            this.hedges = hedges;
+        }
+
+        <T> T execute(Supplier<T> remoteCall, Permit permit) {
+            long timeoutMs = adaptiveTimeoutMs();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+            CompletableFuture<T> result = new CompletableFuture<>();
+            AtomicInteger pendingAttempts = new AtomicInteger(1);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Attempt> attempts = new ArrayList<>(2);
+            try {
+                attempts.add(attempt(remoteCall, result, pendingAttempts, failure, permit));
+
+                if (hedgingEnabled) {
+                    long hedgeDelayMs = hedgeDelayMs(timeoutMs);
+                    try {
+                        return result.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException slow) {
+                        // Counted before submitting, so a fast-failing hedge can't end the call early
+                        pendingAttempts.incrementAndGet();
+                        try {
+                            attempts.add(attempt(remoteCall, result, pendingAttempts, failure, permit));
+                            hedges.increment();
+                        } catch (RejectedExecutionException noHedge) {
+                            // No slot for the hedge - keep waiting on the first attempt
+                            log.debug("Hedge for {} not started: {}", service, noHedge.getMessage());
+                            if (pendingAttempts.decrementAndGet() == 0) {
+                                // The first attempt already failed while the hedge was counted
+                                result.completeExceptionally(failure.get());
+                            }
+                        }
+                    }
+                }
+
+                long remainingNanos = Math.max(0, deadline - System.nanoTime());
+                return result.get(remainingNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                rejected("timeout").increment();
+                throw new ServiceUnavailableException(service + " did not answer within " + timeoutMs + " ms");
+            } catch (RejectedExecutionException e) {
+                rejected("executor_full").increment();
+                throw new ServiceUnavailableException(service, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceUnavailableException(service, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new ServiceUnavailableException(service, e.getCause());
+            } finally {
+                // Abandoned (deadline) or losing (hedge) attempts must not keep the connection busy
+                attempts.forEach(Attempt::cancel);
+            }
+        }
+
+        private <T> Attempt attempt(Supplier<T> remoteCall, CompletableFuture<T> result,
+                                    AtomicInteger pendingAttempts, AtomicReference<Throwable> failure,
+                                    Permit permit) {
+            if (slots != null && !slots.tryAcquire()) {
+                throw new RejectedExecutionException(service + " has no free attempt slots");
+            }
+            AtomicBoolean claimed = new AtomicBoolean();
+            Runnable release = () -> {
+                permit.release();
+                if (slots != null) {
+                    slots.release();
+                }
+            };
+            permit.hold();
+            try {
+                Future<?> future = executor.submit(() -> {
+                    if (!claimed.compareAndSet(false, true)) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        T value = remoteCall.get();
+                        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        result.complete(value);
+                    } catch (Throwable t) {
+                        // Only fail once every attempt has failed - a hedge may still succeed
+                        failure.set(t);
+                        if (pendingAttempts.decrementAndGet() == 0) {
+                            result.completeExceptionally(t);
+                        }
+                    } finally {
+                        release.run();
+                    }
+                });
+                return new Attempt(future, claimed, release);
+            } catch (RejectedExecutionException e) {
+                release.run();
+                throw e;
+            }
+        }
+
+        private long adaptiveTimeoutMs() {
+            Double p99 = percentileMs(0.99);
+            if (p99 == null) {
+                return timeoutMaxMs;
+            }
+            long timeout = (long) (p99 * timeoutMultiplier);
+            return Math.max(timeoutMinMs, Math.min(timeoutMaxMs, timeout));
+        }
+
+        private long hedgeDelayMs(long timeoutMs) {
+            Double p95 = percentileMs(0.95);
+            long delay = p95 != null ? p95.longValue() : timeoutMs / 2;
+            return Math.max(hedgeMinDelayMs, Math.min(timeoutMs, delay));
+        }
+
+        private Double percentileMs(double percentile) {
+            if (latency.count() < MIN_SAMPLES_FOR_ADAPTIVE_TIMEOUT) {
+                return null;
+            }
+            for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+                if (value.percentile() == percentile) {
+                    double ms = value.value(TimeUnit.MILLISECONDS);
+                    return ms > 0 ? ms : null;
+                }
+            }
+            return null;
+        }
+
+        Counter rejected(String reason) {
+            return Counter.builder("messaging.remote.rejected")
+                    .description("Remote calls not attempted or abandoned")
+                    .tag("service", service)
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+    }
+}
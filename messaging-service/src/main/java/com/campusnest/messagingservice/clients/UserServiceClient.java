@@ -4,10 +4,18 @@ import com.campusnest.messagingservice.dto.UserDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.Collection;
+import java.util.List;
 
 @FeignClient(name = "user-service")
 public interface UserServiceClient {
 
     @GetMapping("/api/user/public/{userId}")
     UserDTO getUserById(@PathVariable("userId") Long userId);
-}
\ No newline at end of file
+
+    // Batch lookup (max 200 ids) - unknown ids are absent from the result
+    @GetMapping("/api/user/public")
+    List<UserDTO> getUsersByIds(@RequestParam("ids") Collection<Long> ids);
+}
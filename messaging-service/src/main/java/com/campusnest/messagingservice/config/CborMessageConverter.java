@@ -0,0 +1,85 @@
+package com.campusnest.messagingservice.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+
+/**
+ * CBOR (RFC 8949) codec for STOMP payloads
+ *
+ * Registered next to the JSON converter in WebSocketConfig, so it is picked by content type:
+ * - inbound frames sent with content-type:application/cbor are decoded with it
+ * - outbound events for sessions that negotiated CBOR on CONNECT are transcoded with
+ *   transcodeJson (see UserDeliveryRouter)
+ *
+ * The document shape is identical to the JSON one (same field names, ISO dates, enum
+ * names) so clients share one model; the saving comes from binary framing - no quoting
+ * or escaping, compact integers and length-prefixed strings.
+ */
+@Component
+public class CborMessageConverter extends AbstractMessageConverter {
+
+    public static final MimeType APPLICATION_CBOR = MimeType.valueOf("application/cbor");
+
+    private final ObjectMapper cborMapper = CBORMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    public CborMessageConverter() {
+        super(APPLICATION_CBOR);
+        // Only for frames that explicitly say application/cbor - JSON stays the default
+        setStrictContentTypeMatch(true);
+    }
+
+    /**
+     * Re-encodes an already serialized JSON document as CBOR (no object mapping involved)
+     */
+    public byte[] transcodeJson(String json) {
+        try {
+            return cborMapper.writeValueAsBytes(jsonMapper.readTree(json));
+        } catch (IOException e) {
+            throw new MessageConversionException("Could not transcode JSON to CBOR", e);
+        }
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return true;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        try {
+            Object payload = message.getPayload();
+            if (payload instanceof byte[] bytes) {
+                return cborMapper.readValue(bytes, targetClass);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new MessageConversionException(message, "Could not read CBOR: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        try {
+            return cborMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new MessageConversionException("Could not write CBOR: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.campusnest.messagingservice.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-time backfill: conversations + latest message → conversation_inbox rows
+ *
+ * Inserts one row per participant of every existing conversation, with the newest message
+ * as preview. Counterpart and listing display columns stay NULL and are filled lazily by
+ * ConversationInboxService the first time a page containing them is read.
+ *
+ * Runs before the web server accepts traffic and only while conversation_inbox is still
+ * empty. INSERT IGNORE on (user_id, conversation_id) makes concurrent starts harmless.
+ */
+@Component
+@Slf4j
+public class InboxBackfill {
+
+    private static final String BACKFILL_SQL =
+            "INSERT IGNORE INTO conversation_inbox " +
+            "(user_id, conversation_id, participant1_id, participant2_id, counterpart_id, housing_listing_id, " +
+            "last_message_id, last_message_sender_id, last_message_preview, last_message_type, last_message_at, " +
+            "conversation_created_at, is_active) " +
+            "SELECT c.%s, c.id, c.participant1_id, c.participant2_id, c.%s, c.housing_listing_id, " +
+            "m.id, m.sender_id, LEFT(m.content, 255), m.message_type, COALESCE(m.sent_at, c.last_message_at), " +
+            "c.created_at, c.is_active " +
+            "FROM conversations c " +
+            "LEFT JOIN messages m ON m.id = " +
+            "(SELECT MAX(m2.id) FROM messages m2 WHERE m2.conversation_id = c.id)";
+
+    // Injected only to guarantee the schema exists first
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${messaging.inbox.backfill-on-startup:true}")
+    private boolean enabled;
+
+    @PostConstruct
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Integer existing = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM (SELECT 1 FROM conversation_inbox LIMIT 1) t", Integer.class);
+            if (existing != null && existing > 0) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            int inserted = jdbcTemplate.update(String.format(BACKFILL_SQL, "participant1_id", "participant2_id"))
+                    + jdbcTemplate.update(String.format(BACKFILL_SQL, "participant2_id", "participant1_id"));
+            log.info("Backfilled {} conversation inbox rows in {} ms",
+                    inserted, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Conversation inbox backfill failed: {}", e.getMessage());
+        }
+    }
+}
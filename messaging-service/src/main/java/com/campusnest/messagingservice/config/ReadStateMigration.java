@@ -0,0 +1,97 @@
+package com.campusnest.messagingservice.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-time migration: message_status rows → conversation_read_state cursors
+ *
+ * For every (conversation, user) pair in message_status:
+ * - last_read_message_id      = highest message id with a READ row
+ * - last_delivered_message_id = highest message id with any row
+ *
+ * Runs before the web server accepts traffic and only while conversation_read_state is
+ * still empty. The upsert uses GREATEST, so instances starting concurrently (or a re-run)
+ * can never move a cursor backwards.
+ *
+ * Note: READ rows for individual messages (gaps) collapse to the highest read id.
+ * The MessageStatus entity is gone; the legacy table is read here only if it still exists.
+ *
+ * Also backfills conversations.last_message_id (the committed high-water mark read cursors
+ * are taken from) for conversations created before the column existed. Only NULL values
+ * are filled, and writers only ever raise the value, so this is safe under live traffic.
+ */
+@Component
+@Slf4j
+public class ReadStateMigration {
+
+    // Injected only to guarantee the schema exists first
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${messaging.read-state.migrate-on-startup:true}")
+    private boolean enabled;
+
+    @PostConstruct
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+        backfillLastMessageIds();
+        try {
+            Integer legacyTable = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.tables " +
+                    "WHERE table_schema = DATABASE() AND table_name = 'message_status'", Integer.class);
+            if (legacyTable == null || legacyTable == 0) {
+                return;
+            }
+
+            Integer existing = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM (SELECT 1 FROM conversation_read_state LIMIT 1) t", Integer.class);
+            if (existing != null && existing > 0) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            int migrated = jdbcTemplate.update(
+                    "INSERT INTO conversation_read_state " +
+                    "(conversation_id, user_id, last_read_message_id, last_delivered_message_id, updated_at) " +
+                    "SELECT m.conversation_id, ms.user_id, " +
+                    "MAX(CASE WHEN ms.status = 'READ' THEN ms.message_id ELSE 0 END), " +
+                    "MAX(ms.message_id), NOW() " +
+                    "FROM message_status ms JOIN messages m ON m.id = ms.message_id " +
+                    "GROUP BY m.conversation_id, ms.user_id " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id)), " +
+                    "last_delivered_message_id = GREATEST(last_delivered_message_id, VALUES(last_delivered_message_id))");
+            log.info("Migrated message_status into {} read cursors in {} ms",
+                    migrated, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Read state migration failed: {}", e.getMessage());
+        }
+    }
+
+    private void backfillLastMessageIds() {
+        try {
+            int updated = jdbcTemplate.update(
+                    "UPDATE conversations c " +
+                    "JOIN (SELECT conversation_id, MAX(id) AS max_id FROM messages GROUP BY conversation_id) latest " +
+                    "ON latest.conversation_id = c.id " +
+                    "SET c.last_message_id = latest.max_id " +
+                    "WHERE c.last_message_id IS NULL");
+            if (updated > 0) {
+                log.info("Backfilled last_message_id for {} conversations", updated);
+            }
+        } catch (Exception e) {
+            log.error("last_message_id backfill failed: {}", e.getMessage());
+        }
+    }
+}
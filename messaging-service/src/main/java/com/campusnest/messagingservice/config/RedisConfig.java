@@ -12,12 +12,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -137,16 +139,14 @@ public class RedisConfig {
          * Cache Avalanche Prevention Strategy:
          * - conversations: 30min ± 20% = 24-36 min
          * - conversation-messages: 15min ± 20% = 12-18 min
-         * - unread-counts: 5min ± 20% = 4-6 min
-         * - conversation-unread-counts: 5min ± 20% = 4-6 min
+         *
+         * Unread counts are not cached here - see UnreadCounterService (per-user Redis hash).
          *
          * This prevents all cached items from expiring simultaneously.
          */
         Map<String, RedisCacheConfiguration> cacheConfigurations = Map.of(
                 "conversations", defaultConfig.entryTtl(addJitter(Duration.ofMinutes(30), 20)),
-                "conversation-messages", defaultConfig.entryTtl(addJitter(Duration.ofMinutes(15), 20)),
-                "unread-counts", defaultConfig.entryTtl(addJitter(Duration.ofMinutes(5), 20)),
-                "conversation-unread-counts", defaultConfig.entryTtl(addJitter(Duration.ofMinutes(5), 20))
+                "conversation-messages", defaultConfig.entryTtl(addJitter(Duration.ofMinutes(15), 20))
         );
 
         return RedisCacheManager.builder(connectionFactory)
@@ -154,4 +154,19 @@ public class RedisConfig {
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
     }
+
+    /**
+     * Shared pub/sub listener container - components register their own channels
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        if (virtualThreads) {
+            container.setTaskExecutor(new VirtualThreadTaskExecutor("redis-listener-"));
+        }
+        return container;
+    }
 }
@@ -4,11 +4,16 @@ import com.campusnest.messagingservice.security.WebSocketAuthenticationHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -17,16 +22,111 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Autowired
     private WebSocketAuthenticationHandler webSocketAuthenticationHandler;
 
+    @Autowired
+    private CborMessageConverter cborMessageConverter;
+
     @Value("${websocket.allowed.origins}")
     private String[] allowedOrigins;
 
+    // Same switch as Tomcat/@Async/@Scheduled - Boot does not configure the STOMP channels
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${messaging.broker.relay.enabled:false}")
+    private boolean relayEnabled;
+
+    @Value("${messaging.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${messaging.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${messaging.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${messaging.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${messaging.broker.relay.heartbeat-ms:10000}")
+    private long relayHeartbeatMs;
+
+    @Value("${messaging.websocket.send-time-limit-ms:5000}")
+    private int sendTimeLimitMs;
+
+    @Value("${messaging.websocket.send-buffer-size-limit-bytes:262144}")
+    private int sendBufferSizeLimit;
+
+    @Value("${messaging.websocket.message-size-limit-bytes:32768}")
+    private int messageSizeLimit;
+
+    /**
+     * Broker selection
+     *
+     * Problem:
+     * The simple broker keeps subscriptions in memory, so a user connected to instance B
+     * never received a message sent through instance A - only one replica could run.
+     *
+     * With messaging.broker.relay.enabled every instance relays /topic and /queue to one
+     * external STOMP broker, which holds all subscriptions. Two broadcasts make user
+     * destinations (convertAndSendToUser / @SendToUser) cluster-aware:
+     * - user registry broadcast: each instance periodically publishes its local STOMP users,
+     *   so the user registry resolves sessions held by other instances
+     * - user destination broadcast: messages for users that cannot be resolved yet
+     *   (registry not yet synced) are re-published for the other instances to resolve
+     *
+     * Destinations keep their "/" separated names, so the broker must accept them as-is:
+     * ActiveMQ Artemis does; RabbitMQ's STOMP plugin rejects multi-segment /queue names.
+     */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        // Enable a simple memory-based message broker
-        registry.enableSimpleBroker("/topic", "/queue");
+        if (relayEnabled) {
+            registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(relayHeartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(relayHeartbeatMs)
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            // Enable a simple memory-based message broker
+            registry.enableSimpleBroker("/topic", "/queue");
+        }
         registry.setApplicationDestinationPrefixes("/app");
     }
 
+    /**
+     * Payload codecs, chosen by the frame's content-type header
+     *
+     * Boot's configurer registers the String / byte[] / JSON converters; CBOR is appended
+     * with a strict content-type match, so frames without application/cbor never reach it.
+     * Clients opt in to CBOR events with the CONNECT header "accept-content: application/cbor"
+     * (see UserSessionRegistry / UserDeliveryRouter).
+     *
+     * Compression: Tomcat installs the permessage-deflate extension and Spring's upgrade
+     * strategy offers the container's extensions, so clients that request it in the
+     * handshake (Sec-WebSocket-Extensions) get compressed frames on /ws-native without
+     * further configuration.
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(cborMessageConverter);
+        return true;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Tighter than Spring's defaults (10s / 512KB / 64KB): a slow consumer is dropped after
+        // 5s or 256KB of backlog, and inbound frames are capped near the largest legal chat
+        // frame (5000 chars, up to 4 UTF-8 bytes each, plus STOMP/JSON overhead)
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // Register WebSocket endpoint with SockJS fallback (for web browsers)
@@ -44,5 +144,17 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
         registration.interceptors(webSocketAuthenticationHandler);
+        if (virtualThreads) {
+            // One virtual thread per inbound frame: blocking JDBC/Redis/Feign in @MessageMapping
+            // handlers no longer exhausts a fixed pool sized to 2 x CPU cores
+            registration.executor(new VirtualThreadTaskExecutor("stomp-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("stomp-outbound-"));
+        }
     }
 }
\ No newline at end of file
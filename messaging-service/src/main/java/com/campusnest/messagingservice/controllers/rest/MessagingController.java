@@ -1,20 +1,26 @@
 package com.campusnest.messagingservice.controllers.rest;
 
-import com.campusnest.messagingservice.clients.HousingServiceClient;
-import com.campusnest.messagingservice.clients.UserServiceClient;
+import com.campusnest.messagingservice.dto.ChatMessageResponse;
 import com.campusnest.messagingservice.dto.ConversationDTO;
 import com.campusnest.messagingservice.dto.MessageDTO;
 import com.campusnest.messagingservice.dto.UserDTO;
 import com.campusnest.messagingservice.dto.HousingListingDTO;
+import com.campusnest.messagingservice.enums.MessageType;
 import com.campusnest.messagingservice.models.Conversation;
 import com.campusnest.messagingservice.models.Message;
 import com.campusnest.messagingservice.requests.CreateConversationRequest;
+import com.campusnest.messagingservice.services.ConversationInboxService;
+import com.campusnest.messagingservice.services.EnrichmentExecutor;
+import com.campusnest.messagingservice.services.MessageIdempotencyService;
 import com.campusnest.messagingservice.services.MessagingService;
+import com.campusnest.messagingservice.services.RemoteProfileCache;
+import com.campusnest.messagingservice.services.UserProfileLoader;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -22,6 +28,7 @@ import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
@@ -33,10 +40,19 @@ public class MessagingController {
     private MessagingService messagingService;
 
     @Autowired
-    private UserServiceClient userServiceClient;
+    private RemoteProfileCache remoteProfileCache;
 
     @Autowired
-    private HousingServiceClient housingServiceClient;
+    private MessageIdempotencyService idempotencyService;
+
+    @Autowired
+    private ConversationInboxService inboxService;
+
+    @Autowired
+    private UserProfileLoader userProfileLoader;
+
+    @Autowired
+    private EnrichmentExecutor enrichmentExecutor;
 
     /**
      * Create or get conversation
@@ -66,8 +82,8 @@ public class MessagingController {
         Long currentUserId = getCurrentUserId(authentication);
         Pageable pageable = PageRequest.of(page, size);
 
-        Page<Conversation> conversations = messagingService.getUserConversations(currentUserId, pageable);
-        Page<ConversationDTO> dtos = conversations.map(conv -> convertToConversationDTO(conv, currentUserId));
+        // Served from the conversation_inbox read model - one indexed query per page
+        Page<ConversationDTO> dtos = inboxService.getInbox(currentUserId, pageable);
 
         return ResponseEntity.ok(dtos);
     }
@@ -101,6 +117,9 @@ public class MessagingController {
         Pageable pageable = PageRequest.of(page, size);
 
         Page<Message> messages = messagingService.getConversationMessages(conversationId, currentUserId, pageable);
+
+        // Resolve every sender on the page with one batch call
+        userProfileLoader.load(messages.getContent().stream().map(Message::getSenderId).toList());
         Page<MessageDTO> dtos = messages.map(this::convertToMessageDTO);
 
         return ResponseEntity.ok(dtos);
@@ -117,11 +136,19 @@ public class MessagingController {
 
         Long currentUserId = getCurrentUserId(authentication);
         String content = request.get("content");
+        String clientMessageId = request.get("clientMessageId");
 
-        Message message = messagingService.sendMessage(conversationId, currentUserId, content);
-        MessageDTO dto = convertToMessageDTO(message);
+        // Retried POSTs with the same clientMessageId return the original message
+        MessageIdempotencyService.SendResult result = idempotencyService.sendOnce(
+                currentUserId, clientMessageId, () -> ChatMessageResponse.fromMessage(
+                        messagingService.sendMessage(conversationId, currentUserId, content,
+                                MessageType.TEXT, clientMessageId)));
 
-        return ResponseEntity.ok(dto);
+        if (result.response() == null) {
+            // Same clientMessageId still being processed
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok(convertToMessageDTO(result.response()));
     }
 
     /**
@@ -207,34 +234,57 @@ public class MessagingController {
         dto.setLastMessageAt(conversation.getLastMessageAt());
         dto.setIsActive(conversation.getIsActive());
 
-        // Fetch user details via Feign
-        try {
-            dto.setParticipant1(userServiceClient.getUserById(conversation.getParticipant1Id()));
-            dto.setParticipant2(userServiceClient.getUserById(conversation.getParticipant2Id()));
-        } catch (Exception e) {
-            log.warn("Failed to fetch user details: {}", e.getMessage());
+        // Independent lookups fan out concurrently under one deadline - the DTO costs the
+        // slowest lookup, not the sum. Anything late or failed is left out (partial DTO).
+        long deadline = enrichmentExecutor.deadline();
+        List<Long> participantIds = List.of(conversation.getParticipant1Id(), conversation.getParticipant2Id());
+        CompletableFuture<Map<Long, UserDTO>> usersFuture =
+                enrichmentExecutor.supply(() -> remoteProfileCache.getUsers(participantIds));
+        CompletableFuture<HousingListingDTO> listingFuture =
+                enrichmentExecutor.supply(() -> remoteProfileCache.getListing(conversation.getHousingListingId()));
+        CompletableFuture<Long> unreadFuture =
+                enrichmentExecutor.supply(() -> messagingService.getUnreadMessageCount(conversation.getId(), currentUserId));
+        CompletableFuture<Message> lastMessageFuture =
+                enrichmentExecutor.supply(() -> messagingService.getLatestMessage(conversation.getId()));
+
+        Map<Long, UserDTO> users = enrichmentExecutor.await(usersFuture, deadline, Map.of());
+        dto.setParticipant1(users.get(conversation.getParticipant1Id()));
+        dto.setParticipant2(users.get(conversation.getParticipant2Id()));
+        dto.setHousingListing(enrichmentExecutor.await(listingFuture, deadline, null));
+        dto.setUnreadCount(enrichmentExecutor.await(unreadFuture, deadline, null));
+
+        Message lastMessage = enrichmentExecutor.await(lastMessageFuture, deadline, null);
+        if (lastMessage != null) {
+            // The sender is one of the participants resolved above
+            dto.setLastMessage(toMessageDTO(lastMessage, users.get(lastMessage.getSenderId())));
         }
 
-        // Fetch housing listing details via Feign
-        try {
-            dto.setHousingListing(housingServiceClient.getHousingListingById(conversation.getHousingListingId()));
-        } catch (Exception e) {
-            log.warn("Failed to fetch housing listing details: {}", e.getMessage());
-        }
+        return dto;
+    }
 
-        // Get unread count
-        dto.setUnreadCount(messagingService.getUnreadMessageCount(conversation.getId(), currentUserId));
+    private MessageDTO convertToMessageDTO(ChatMessageResponse message) {
+        MessageDTO dto = new MessageDTO();
+        dto.setId(message.getId());
+        dto.setConversationId(message.getConversationId());
+        dto.setSenderId(message.getSenderId());
+        dto.setContent(message.getContent());
+        dto.setMessageType(message.getMessageType());
+        dto.setSentAt(message.getSentAt());
+        dto.setIsEdited(message.getIsEdited());
+        dto.setClientMessageId(message.getClientMessageId());
 
-        // Get last message
-        Message lastMessage = messagingService.getLatestMessage(conversation.getId());
-        if (lastMessage != null) {
-            dto.setLastMessage(convertToMessageDTO(lastMessage));
-        }
+        // Sender details - served from the request-local loader when preloaded
+        dto.setSender(userProfileLoader.get(message.getSenderId()));
 
         return dto;
     }
 
     private MessageDTO convertToMessageDTO(Message message) {
+        // Sender details - served from the request-local loader when preloaded
+        return toMessageDTO(message, userProfileLoader.get(message.getSenderId()));
+    }
+
+    private MessageDTO toMessageDTO(Message message, UserDTO sender) {
         MessageDTO dto = new MessageDTO();
         dto.setId(message.getId());
         dto.setConversationId(message.getConversation().getId());
@@ -244,13 +294,8 @@ public class MessagingController {
         dto.setSentAt(message.getSentAt());
         dto.setIsEdited(message.getIsEdited());
         dto.setEditedAt(message.getEditedAt());
-
-        // Fetch sender details via Feign
-        try {
-            dto.setSender(userServiceClient.getUserById(message.getSenderId()));
-        } catch (Exception e) {
-            log.warn("Failed to fetch sender details: {}", e.getMessage());
-        }
+        dto.setClientMessageId(message.getClientMessageId());
+        dto.setSender(sender);
 
         return dto;
     }
@@ -4,28 +4,43 @@ import com.campusnest.messagingservice.dto.ChatMessageRequest;
 import com.campusnest.messagingservice.dto.ChatMessageResponse;
 import com.campusnest.messagingservice.dto.TypingIndicatorRequest;
 import com.campusnest.messagingservice.dto.TypingIndicatorResponse;
+import com.campusnest.messagingservice.enums.DeliveryEventType;
+import com.campusnest.messagingservice.enums.MessageType;
+import com.campusnest.messagingservice.exceptions.ConversationNotFoundException;
+import com.campusnest.messagingservice.exceptions.UnauthorizedAccessException;
 import com.campusnest.messagingservice.models.Conversation;
 import com.campusnest.messagingservice.models.Message;
 import com.campusnest.messagingservice.security.WebSocketAuthenticationHandler;
+import com.campusnest.messagingservice.services.ConversationMembershipCache;
+import com.campusnest.messagingservice.services.MessageIdempotencyService;
+import com.campusnest.messagingservice.services.MessageWriteBehindService;
 import com.campusnest.messagingservice.services.MessagingService;
+import com.campusnest.messagingservice.services.TypingIndicatorCoalescer;
+import com.campusnest.messagingservice.services.UserDeliveryRouter;
 import com.campusnest.messagingservice.services.UserPresenceService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Controller
 @Slf4j
 public class WebSocketMessagingController {
 
+
     @Autowired
     private MessagingService messagingService;
 
@@ -38,6 +53,28 @@ public class WebSocketMessagingController {
     @Autowired
     private UserPresenceService presenceService;
 
+    @Autowired
+    private MessageWriteBehindService writeBehindService;
+
+    @Autowired
+    private MessageIdempotencyService idempotencyService;
+
+    @Autowired
+    private TypingIndicatorCoalescer typingCoalescer;
+
+    @Autowired
+    private ConversationMembershipCache membershipCache;
+
+    // Reaches the user's sessions on every instance, not just this one
+    @Autowired
+    private UserDeliveryRouter deliveryRouter;
+
+    // Per-type destinations (/queue/messages, /queue/message-sent, /queue/typing, /queue/presence)
+    // sent next to /queue/events. Off by default - each message would cost 6 frames instead of 4;
+    // enable only while clients that don't consume the multiplexed queue are still deployed
+    @Value("${messaging.ws.legacy-destinations-enabled:false}")
+    private boolean legacyDestinations;
+
     @MessageMapping("/chat/send")
     public void sendMessage(@jakarta.validation.Valid ChatMessageRequest request, Principal principal) {
         try {
@@ -48,69 +85,79 @@ public class WebSocketMessagingController {
             log.info("Received WebSocket message from user {} (ID: {}) for conversation {}",
                     maskEmail(currentUserEmail), currentUserId, request.getConversationId());
 
-            // Validate user can access conversation
-            if (!messagingService.canUserAccessConversation(request.getConversationId(), currentUserId)) {
-                log.warn("User {} attempted to send message to unauthorized conversation {}",
-                        currentUserId, request.getConversationId());
+            MessageType messageType = request.getMessageType() != null ? request.getMessageType() : MessageType.TEXT;
+            AtomicReference<ConversationMembershipCache.Membership> membershipRef = new AtomicReference<>();
+
+            // Retries with the same clientMessageId replay the original response before any
+            // database access (the key is scoped to the sender, so nothing leaks)
+            MessageIdempotencyService.SendResult result = idempotencyService.sendOnce(
+                    currentUserId, request.getClientMessageId(), () -> {
+                        // Validates the user can post to the conversation (in memory)
+                        ConversationMembershipCache.Membership membership = membershipCache.authorize(
+                                request.getConversationId(), currentUserId);
+                        membershipRef.set(membership);
+
+                        if (writeBehindService.isEnabled()) {
+                            // Durable log append only - persisted to MySQL by the write-behind consumer
+                            return writeBehindService.append(membership, currentUserId,
+                                    request.getContent(), messageType, request.getClientMessageId());
+                        }
+
+                        // Send message through service
+                        Message message = messagingService.sendMessage(
+                                request.getConversationId(),
+                                currentUserId,
+                                request.getContent(),
+                                messageType,
+                                request.getClientMessageId()
+                        );
+
+                        // Clear user caches
+                        clearUserCaches(currentUserId);
+
+                        return ChatMessageResponse.fromMessage(message);
+                    });
+
+            ChatMessageResponse response = result.response();
+            if (result.duplicate()) {
+                // Already delivered to the recipient - only re-acknowledge the sender
+                if (response != null) {
+                    sendConfirmation(currentUserId, request.getConversationId(), deliveryRouter.toJson(response));
+                }
                 return;
             }
+            ConversationMembershipCache.Membership membership = membershipRef.get();
 
-            // Send message through service
-            Message message = messagingService.sendMessage(
-                    request.getConversationId(),
-                    currentUserId,
-                    request.getContent(),
-                    request.getMessageType() != null ? request.getMessageType() :
-                            com.campusnest.messagingservice.enums.MessageType.TEXT
-            );
-
-            // Clear user caches
-            clearUserCaches(currentUserId);
-
-            // Create response
-            ChatMessageResponse response = ChatMessageResponse.fromMessage(message);
-
-            // Get conversation details
-            Conversation conversation = messagingService.getConversation(request.getConversationId(), currentUserId);
+            // Serialized once - the recipient's MESSAGE, the sender's ACK and any legacy
+            // destinations all reuse the same JSON
+            String payload = deliveryRouter.toJson(response);
 
             // Get other participant ID
-            Long otherParticipantId = conversation.getOtherParticipantId(currentUserId);
+            Long otherParticipantId = membership.getOtherParticipantId(currentUserId);
 
             if (otherParticipantId != null) {
-                // Send to the other participant
-                String destination = "/queue/messages/" + request.getConversationId();
-                log.info("Sending WebSocket message to user: {}, destination: {}", otherParticipantId, destination);
+                log.info("Sending WebSocket message to user: {}, conversation: {}",
+                        otherParticipantId, request.getConversationId());
 
-                messagingTemplate.convertAndSendToUser(
-                        otherParticipantId.toString(),
-                        destination,
-                        response
-                );
+                deliveryRouter.sendEvent(otherParticipantId, DeliveryEventType.MESSAGE,
+                        request.getConversationId(), payload);
 
-                // Also send to a general message queue
-                messagingTemplate.convertAndSendToUser(
-                        otherParticipantId.toString(),
-                        "/queue/messages",
-                        response
-                );
+                if (legacyDestinations) {
+                    deliveryRouter.sendSerialized(otherParticipantId,
+                            "/queue/messages/" + request.getConversationId(), payload);
+                    deliveryRouter.sendSerialized(otherParticipantId, "/queue/messages", payload);
+                }
 
                 log.info("Message sent to user {} in conversation {}",
                         otherParticipantId, request.getConversationId());
             }
 
             // Send confirmation back to sender
-            messagingTemplate.convertAndSendToUser(
-                    currentUserId.toString(),
-                    "/queue/message-sent/" + request.getConversationId(),
-                    response
-            );
-
-            messagingTemplate.convertAndSendToUser(
-                    currentUserId.toString(),
-                    "/queue/message-sent",
-                    response
-            );
+            sendConfirmation(currentUserId, request.getConversationId(), payload);
 
+        } catch (ConversationNotFoundException e) {
+            log.warn("User {} attempted to send message to unauthorized conversation {}",
+                    principal != null ? principal.getName() : null, request.getConversationId());
         } catch (Exception e) {
             log.error("Error sending WebSocket message: {}", e.getMessage());
 
@@ -126,7 +173,8 @@ public class WebSocketMessagingController {
     }
 
     @MessageMapping("/chat/typing")
-    public void handleTypingIndicator(TypingIndicatorRequest request, Principal principal) {
+    public void handleTypingIndicator(TypingIndicatorRequest request, Principal principal,
+                                      SimpMessageHeaderAccessor headerAccessor) {
         try {
             WebSocketAuthenticationHandler.UserPrincipal userPrincipal = getCurrentUserPrincipal(principal);
             Long currentUserId = userPrincipal.getUserId();
@@ -134,37 +182,44 @@ public class WebSocketMessagingController {
             log.debug("Received typing indicator from user {} for conversation {}: {}",
                     currentUserId, request.getConversationId(), request.getIsTyping());
 
-            // Validate user can access conversation
-            if (!messagingService.canUserAccessConversation(request.getConversationId(), currentUserId)) {
+            // Validate user can post to the conversation - answered from the membership cache,
+            // so typing costs no SQL
+            Long otherParticipantId;
+            try {
+                otherParticipantId = membershipCache.authorize(request.getConversationId(), currentUserId)
+                        .getOtherParticipantId(currentUserId);
+            } catch (ConversationNotFoundException | UnauthorizedAccessException e) {
                 log.warn("User {} attempted to send typing indicator to unauthorized conversation {}",
                         currentUserId, request.getConversationId());
                 return;
             }
 
-            // Update Redis typing indicator
-            if (Boolean.TRUE.equals(request.getIsTyping())) {
-                presenceService.markUserTyping(request.getConversationId(), currentUserId);
-            } else {
-                presenceService.removeUserTyping(request.getConversationId(), currentUserId);
+            boolean typing = Boolean.TRUE.equals(request.getIsTyping());
+            TypingIndicatorCoalescer.Decision decision = typingCoalescer.onTyping(
+                    headerAccessor.getSessionAttributes(), request.getConversationId(), typing);
+
+            // Update Redis typing indicator (transitions + periodic TTL refresh only)
+            if (decision.store()) {
+                if (typing) {
+                    presenceService.markUserTyping(request.getConversationId(), currentUserId);
+                } else {
+                    presenceService.removeUserTyping(request.getConversationId(), currentUserId);
+                }
             }
 
-            // Get conversation details
-            Conversation conversation = messagingService.getConversation(request.getConversationId(), currentUserId);
-
-            // Get other participant ID
-            Long otherParticipantId = conversation.getOtherParticipantId(currentUserId);
-
-            if (otherParticipantId != null) {
+            if (decision.forward() && otherParticipantId != null) {
                 // Create typing indicator response
                 TypingIndicatorResponse response = TypingIndicatorResponse.create(
                         request.getConversationId(), currentUserId, request.getIsTyping());
 
                 // Send typing indicator to the other participant
-                messagingTemplate.convertAndSendToUser(
-                        otherParticipantId.toString(),
-                        "/queue/typing/" + request.getConversationId(),
-                        response
-                );
+                String payload = deliveryRouter.toJson(response);
+                deliveryRouter.sendEvent(otherParticipantId, DeliveryEventType.TYPING,
+                        request.getConversationId(), payload);
+                if (legacyDestinations) {
+                    deliveryRouter.sendSerialized(otherParticipantId,
+                            "/queue/typing/" + request.getConversationId(), payload);
+                }
                 log.debug("Typing indicator sent to user {} in conversation {}",
                         otherParticipantId, request.getConversationId());
             }
@@ -183,8 +238,11 @@ public class WebSocketMessagingController {
 
             log.info("User {} joining conversation {}", currentUserId, conversationId);
 
-            // Validate user can access conversation
-            if (!messagingService.canUserAccessConversation(conversationId, currentUserId)) {
+            // Validate user can access conversation (deactivated ones stay readable)
+            ConversationMembershipCache.Membership membership;
+            try {
+                membership = membershipCache.authorizeParticipant(conversationId, currentUserId);
+            } catch (ConversationNotFoundException e) {
                 log.warn("User {} attempted to join unauthorized conversation {}", currentUserId, conversationId);
                 return;
             }
@@ -192,9 +250,17 @@ public class WebSocketMessagingController {
             // Mark messages as read when user joins conversation
             messagingService.markMessagesAsRead(conversationId, currentUserId);
 
+            // Read receipt for the other participant
+            Long otherParticipantId = membership.getOtherParticipantId(currentUserId);
+            if (otherParticipantId != null) {
+                deliveryRouter.sendEvent(otherParticipantId, DeliveryEventType.READ_RECEIPT, conversationId,
+                        deliveryRouter.toJson(Map.of("conversationId", conversationId,
+                                "readerId", currentUserId, "readAt", LocalDateTime.now())));
+            }
+
             // Send confirmation
-            messagingTemplate.convertAndSendToUser(
-                    currentUserId.toString(),
+            deliveryRouter.sendToUser(
+                    currentUserId,
                     "/queue/conversation-joined/" + conversationId,
                     "Successfully joined conversation"
             );
@@ -216,8 +282,8 @@ public class WebSocketMessagingController {
             log.info("User {} leaving conversation {}", currentUserId, conversationId);
 
             // Send confirmation
-            messagingTemplate.convertAndSendToUser(
-                    currentUserId.toString(),
+            deliveryRouter.sendToUser(
+                    currentUserId,
                     "/queue/conversation-left/" + conversationId,
                     "Left conversation"
             );
@@ -243,17 +309,7 @@ public class WebSocketMessagingController {
         log.info("User {} connected - now ONLINE", userPrincipal.getUserId());
 
         // Broadcast online status to all conversation participants
-        List<Conversation> userConversations = messagingService.getUserConversations(userPrincipal.getUserId());
-        for (Conversation conv : userConversations) {
-            Long otherUserId = conv.getOtherParticipantId(userPrincipal.getUserId());
-            if (otherUserId != null) {
-                messagingTemplate.convertAndSendToUser(
-                    otherUserId.toString(),
-                    "/queue/presence",
-                    Map.of("userId", userPrincipal.getUserId(), "isOnline", true)
-                );
-            }
-        }
+        broadcastPresence(userPrincipal.getUserId(), true);
     }
 
     @MessageMapping("/chat/disconnect")
@@ -263,15 +319,35 @@ public class WebSocketMessagingController {
         log.info("User {} disconnected - now OFFLINE", userPrincipal.getUserId());
 
         // Broadcast offline status to all conversation participants
-        List<Conversation> userConversations = messagingService.getUserConversations(userPrincipal.getUserId());
-        for (Conversation conv : userConversations) {
-            Long otherUserId = conv.getOtherParticipantId(userPrincipal.getUserId());
+        broadcastPresence(userPrincipal.getUserId(), false);
+    }
+
+    private void sendConfirmation(Long senderId, Long conversationId, String payload) {
+        deliveryRouter.sendEvent(senderId, DeliveryEventType.ACK, conversationId, payload);
+
+        if (legacyDestinations) {
+            deliveryRouter.sendSerialized(senderId, "/queue/message-sent/" + conversationId, payload);
+            deliveryRouter.sendSerialized(senderId, "/queue/message-sent", payload);
+        }
+    }
+
+    private void broadcastPresence(Long userId, boolean online) {
+        // One payload / envelope for all partners; a partner shared by several
+        // conversations is notified once
+        String payload = deliveryRouter.toJson(Map.of("userId", userId, "isOnline", online));
+        String envelope = deliveryRouter.envelope(DeliveryEventType.PRESENCE, null, payload);
+
+        Set<Long> partners = new LinkedHashSet<>();
+        for (Conversation conv : messagingService.getUserConversations(userId)) {
+            Long otherUserId = conv.getOtherParticipantId(userId);
             if (otherUserId != null) {
-                messagingTemplate.convertAndSendToUser(
-                    otherUserId.toString(),
-                    "/queue/presence",
-                    Map.of("userId", userPrincipal.getUserId(), "isOnline", false)
-                );
+                partners.add(otherUserId);
+            }
+        }
+        for (Long partnerId : partners) {
+            deliveryRouter.sendSerialized(partnerId, UserDeliveryRouter.EVENTS_DESTINATION, envelope);
+            if (legacyDestinations) {
+                deliveryRouter.sendSerialized(partnerId, "/queue/presence", payload);
             }
         }
     }
@@ -288,9 +364,7 @@ public class WebSocketMessagingController {
 
     private void clearUserCaches(Long userId) {
         // Clear specific user caches that might be affected by new messages
-        if (cacheManager.getCache("unread-counts") != null) {
-            cacheManager.getCache("unread-counts").evict(userId);
-        }
+        // (unread counts are maintained incrementally by UnreadCounterService)
         if (cacheManager.getCache("conversations") != null) {
             cacheManager.getCache("conversations").clear();
         }
@@ -20,4 +20,8 @@ public class ChatMessageRequest {
     private String content;
 
     private MessageType messageType;
+
+    // Idempotency key generated by the client (e.g. a UUID), echoed back in the response
+    @Size(max = 64, message = "Client message ID must be at most 64 characters")
+    private String clientMessageId;
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ public class ChatMessageResponse {
     private MessageType messageType;
     private LocalDateTime sentAt;
     private Boolean isEdited;
+    private String clientMessageId;
 
     public static ChatMessageResponse fromMessage(Message message) {
         ChatMessageResponse response = new ChatMessageResponse();
@@ -29,6 +30,7 @@ public class ChatMessageResponse {
         response.setMessageType(message.getMessageType());
         response.setSentAt(message.getSentAt());
         response.setIsEdited(message.getIsEdited());
+        response.setClientMessageId(message.getClientMessageId());
         return response;
     }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.campusnest.messagingservice.dto;
+
+import com.campusnest.messagingservice.enums.DeliveryEventType;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Typed frame on the multiplexed /user/queue/events destination
+ *
+ * The payload is JSON that was serialized once up front and is embedded verbatim
+ * (@JsonRawValue), so wrapping it for several recipients / event types never
+ * re-serializes the payload object.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryEnvelope {
+    private DeliveryEventType type;
+    private Long conversationId;
+    @JsonRawValue
+    private String payload;
+}
@@ -5,6 +5,8 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -18,4 +20,36 @@ public class HousingListingDTO {
     private Integer bedrooms;
     private Integer bathrooms;
     private String mainImageUrl;
-}
\ No newline at end of file
+    // false for expired/archived listings (housing-service serves them as tombstones)
+    private Boolean isActive;
+    // housing-service sends the image list, not mainImageUrl
+    private List<ImageInfo> images;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ImageInfo {
+        private String imageUrl;
+        private String mediumUrl;
+        private Boolean isPrimary;
+        private Integer displayOrder;
+    }
+
+    /**
+     * Explicit mainImageUrl, else the primary image (first by display order if none is
+     * marked) - medium variant preferred, since callers render it as a thumbnail
+     */
+    public String getMainImageUrl() {
+        if (mainImageUrl != null || images == null || images.isEmpty()) {
+            return mainImageUrl;
+        }
+        ImageInfo main = images.stream()
+                .filter(image -> Boolean.TRUE.equals(image.getIsPrimary()))
+                .findFirst()
+                .orElseGet(() -> images.stream()
+                        .min(Comparator.comparing(ImageInfo::getDisplayOrder,
+                                Comparator.nullsLast(Comparator.naturalOrder())))
+                        .orElseThrow());
+        return main.getMediumUrl() != null ? main.getMediumUrl() : main.getImageUrl();
+    }
+}
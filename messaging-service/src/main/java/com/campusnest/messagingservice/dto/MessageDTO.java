@@ -20,4 +20,5 @@ public class MessageDTO {
     private LocalDateTime sentAt;
     private Boolean isEdited;
     private LocalDateTime editedAt;
+    private String clientMessageId;
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.campusnest.messagingservice.enums;
+
+public enum DeliveryEventType {
+    MESSAGE,        // New message for the recipient
+    ACK,            // Sender's confirmation that the message was stored
+    TYPING,         // Typing indicator of the other participant
+    PRESENCE,       // Online / offline change of a conversation partner
+    READ_RECEIPT    // Other participant read the conversation
+}
@@ -1,7 +0,0 @@
-package com.campusnest.messagingservice.enums;
-
-public enum MessageStatusType {
-    SENT,       // Message sent by sender
-    DELIVERED,  // Message delivered to recipient's device
-    READ        // Message read by recipient
-}
\ No newline at end of file
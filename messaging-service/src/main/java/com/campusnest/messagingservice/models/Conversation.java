@@ -34,6 +34,10 @@ public class Conversation {
     @Column(name = "last_message_at")
     private LocalDateTime lastMessageAt;
 
+    // Highest committed message id - the read cursor high-water mark (see ConversationReadState)
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
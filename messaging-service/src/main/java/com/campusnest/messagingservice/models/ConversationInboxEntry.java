@@ -0,0 +1,105 @@
+package com.campusnest.messagingservice.models;
+
+import com.campusnest.messagingservice.enums.MessageType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Denormalized inbox row - one per (user, conversation)
+ *
+ * Holds everything the conversation list renders (last message preview, counterpart name,
+ * listing title/thumbnail) so an inbox page is a single indexed range scan on
+ * (user_id, is_active, last_message_at) instead of per-conversation Feign and COUNT calls.
+ *
+ * - Last message columns are updated on every send (ConversationInboxService.recordMessage)
+ * - Counterpart / listing columns are captured when the conversation is created and
+ *   filled lazily on read when missing (e.g. rows created by the backfill); user/listing
+ *   change events clear them so the next read fills them again
+ * - listing_image_url is a signed S3 URL, so listing columns older than
+ *   messaging.inbox.listing-max-age-hours (listing_refreshed_at) are refilled as well
+ * - Unread counts are not stored here - they come from UnreadCounterService
+ */
+@Entity
+@Table(name = "conversation_inbox",
+       uniqueConstraints = @UniqueConstraint(name = "uk_inbox_user_conversation",
+               columnNames = {"user_id", "conversation_id"}),
+       indexes = {
+               @Index(name = "idx_inbox_user_active_last_message",
+                       columnList = "user_id, is_active, last_message_at"),
+               @Index(name = "idx_inbox_conversation", columnList = "conversation_id"),
+               @Index(name = "idx_inbox_counterpart", columnList = "counterpart_id"),
+               @Index(name = "idx_inbox_listing", columnList = "housing_listing_id")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationInboxEntry {
+
+    public static final int PREVIEW_LENGTH = 255;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+
+    @Column(name = "participant1_id", nullable = false)
+    private Long participant1Id;
+
+    @Column(name = "participant2_id", nullable = false)
+    private Long participant2Id;
+
+    @Column(name = "counterpart_id", nullable = false)
+    private Long counterpartId;
+
+    @Column(name = "counterpart_first_name")
+    private String counterpartFirstName;
+
+    @Column(name = "counterpart_last_name")
+    private String counterpartLastName;
+
+    @Column(name = "counterpart_university_domain")
+    private String counterpartUniversityDomain;
+
+    @Column(name = "housing_listing_id", nullable = false)
+    private Long housingListingId;
+
+    @Column(name = "listing_title")
+    private String listingTitle;
+
+    @Column(name = "listing_image_url", length = 1024)
+    private String listingImageUrl;
+
+    @Column(name = "listing_refreshed_at")
+    private LocalDateTime listingRefreshedAt;
+
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_message_sender_id")
+    private Long lastMessageSenderId;
+
+    @Column(name = "last_message_preview", length = PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_message_type")
+    private MessageType lastMessageType;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    @Column(name = "conversation_created_at", nullable = false)
+    private LocalDateTime conversationCreatedAt;
+
+    @Column(name = "is_active", nullable = false)
+    private Boolean isActive = true;
+}
@@ -0,0 +1,55 @@
+package com.campusnest.messagingservice.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per-user read/delivery cursor for a conversation
+ *
+ * Replaces one message_status row per (message, user, status): a message is read by a user
+ * iff its id <= last_read_message_id. Cursors only ever move forward (GREATEST upserts in
+ * ConversationReadStateRepository).
+ *
+ * IDENTITY ids alone are not commit-ordered - a lower id can commit after a higher one and
+ * would fall behind a cursor that was taken from MAX(messages.id). Cursors are therefore
+ * derived from conversations.last_message_id, which only ever names committed messages
+ * with no uncommitted lower id in the same conversation:
+ * - every insert first locks the conversation row (FOR UPDATE, held until commit), so
+ *   inserts into one conversation are serialized and get ascending ids
+ * - last_message_id is advanced in the same transaction as the insert
+ * Whole-conversation reads use that committed value; single-message reads use an id the
+ * client has already received, which is committed as well.
+ */
+@Entity
+@Table(name = "conversation_read_state",
+       uniqueConstraints = @UniqueConstraint(name = "uk_read_state_conversation_user",
+               columnNames = {"conversation_id", "user_id"}),
+       indexes = @Index(name = "idx_read_state_user", columnList = "user_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationReadState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "last_read_message_id", nullable = false)
+    private Long lastReadMessageId = 0L;
+
+    @Column(name = "last_delivered_message_id", nullable = false)
+    private Long lastDeliveredMessageId = 0L;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -9,7 +9,10 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages",
+       uniqueConstraints = @UniqueConstraint(name = "uk_messages_sender_client_message",
+               columnNames = {"sender_id", "client_message_id"}),
+       indexes = @Index(name = "idx_messages_conversation_id", columnList = "conversation_id, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,6 +30,10 @@ public class Message {
     @Column(name = "sender_id", nullable = false)
     private Long senderId;
 
+    // Client-generated id used to deduplicate retries (null for server-generated messages)
+    @Column(name = "client_message_id", length = 64)
+    private String clientMessageId;
+
     @Column(name = "content", columnDefinition = "TEXT", nullable = false)
     private String content;
 
@@ -0,0 +1,76 @@
+package com.campusnest.messagingservice.repository;
+
+import com.campusnest.messagingservice.enums.MessageType;
+import com.campusnest.messagingservice.models.ConversationInboxEntry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface ConversationInboxRepository extends JpaRepository<ConversationInboxEntry, Long> {
+
+    // Served by idx_inbox_user_active_last_message
+    Page<ConversationInboxEntry> findByUserIdAndIsActiveTrueOrderByLastMessageAtDesc(Long userId, Pageable pageable);
+
+    /**
+     * Move both participants' rows to a newer last message.
+     * The id guard keeps out-of-order writers (write-behind replays) from moving it back.
+     */
+    @Modifying
+    @Query("UPDATE ConversationInboxEntry e SET " +
+           "e.lastMessageId = :messageId, e.lastMessageSenderId = :senderId, " +
+           "e.lastMessagePreview = :preview, e.lastMessageType = :messageType, e.lastMessageAt = :sentAt " +
+           "WHERE e.conversationId = :conversationId " +
+           "AND (e.lastMessageId IS NULL OR e.lastMessageId < :messageId)")
+    int recordMessage(@Param("conversationId") Long conversationId,
+                      @Param("messageId") Long messageId,
+                      @Param("senderId") Long senderId,
+                      @Param("preview") String preview,
+                      @Param("messageType") MessageType messageType,
+                      @Param("sentAt") LocalDateTime sentAt);
+
+    @Modifying
+    @Query("UPDATE ConversationInboxEntry e SET e.isActive = false WHERE e.conversationId = :conversationId")
+    int deactivateConversation(@Param("conversationId") Long conversationId);
+
+    @Modifying
+    @Query("UPDATE ConversationInboxEntry e SET e.counterpartFirstName = :firstName, " +
+           "e.counterpartLastName = :lastName, e.counterpartUniversityDomain = :universityDomain " +
+           "WHERE e.counterpartId = :counterpartId")
+    int updateCounterpart(@Param("counterpartId") Long counterpartId,
+                          @Param("firstName") String firstName,
+                          @Param("lastName") String lastName,
+                          @Param("universityDomain") String universityDomain);
+
+    @Modifying
+    @Query("UPDATE ConversationInboxEntry e SET e.listingTitle = :title, e.listingImageUrl = :imageUrl, " +
+           "e.listingRefreshedAt = :refreshedAt WHERE e.housingListingId = :listingId")
+    int updateListing(@Param("listingId") Long listingId,
+                      @Param("title") String title,
+                      @Param("imageUrl") String imageUrl,
+                      @Param("refreshedAt") LocalDateTime refreshedAt);
+
+    /**
+     * Change events: drop the copied display info so the next inbox read fetches it again
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ConversationInboxEntry e SET e.counterpartFirstName = NULL, " +
+           "e.counterpartLastName = NULL, e.counterpartUniversityDomain = NULL " +
+           "WHERE e.counterpartId IN :counterpartIds")
+    int clearCounterparts(@Param("counterpartIds") Collection<Long> counterpartIds);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ConversationInboxEntry e SET e.listingTitle = NULL, e.listingImageUrl = NULL, " +
+           "e.listingRefreshedAt = NULL WHERE e.housingListingId IN :listingIds")
+    int clearListings(@Param("listingIds") Collection<Long> listingIds);
+}
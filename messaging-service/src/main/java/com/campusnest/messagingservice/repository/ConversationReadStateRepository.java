@@ -0,0 +1,66 @@
+package com.campusnest.messagingservice.repository;
+
+import com.campusnest.messagingservice.models.ConversationReadState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ConversationReadStateRepository extends JpaRepository<ConversationReadState, Long> {
+
+    Optional<ConversationReadState> findByConversationIdAndUserId(Long conversationId, Long userId);
+
+    /**
+     * Monotonic read cursor upsert - reading also implies delivery.
+     * Concurrent calls are safe: GREATEST never moves a cursor backwards.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO conversation_read_state " +
+                   "(conversation_id, user_id, last_read_message_id, last_delivered_message_id, updated_at) " +
+                   "VALUES (:conversationId, :userId, :messageId, :messageId, NOW()) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id)), " +
+                   "last_delivered_message_id = GREATEST(last_delivered_message_id, VALUES(last_delivered_message_id)), " +
+                   "updated_at = NOW()",
+           nativeQuery = true)
+    int advanceReadCursor(@Param("conversationId") Long conversationId,
+                          @Param("userId") Long userId,
+                          @Param("messageId") Long messageId);
+
+    /**
+     * Mark a whole conversation as read in one statement: participant check, committed
+     * high-water mark (conversations.last_message_id) and cursor upsert are a single
+     * INSERT ... SELECT.
+     * Returns 0 when the user is not a participant or the conversation has no messages.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO conversation_read_state " +
+                   "(conversation_id, user_id, last_read_message_id, last_delivered_message_id, updated_at) " +
+                   "SELECT c.id, :userId, c.last_message_id, c.last_message_id, NOW() " +
+                   "FROM conversations c " +
+                   "WHERE c.id = :conversationId AND (c.participant1_id = :userId OR c.participant2_id = :userId) " +
+                   "AND c.last_message_id IS NOT NULL " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id)), " +
+                   "last_delivered_message_id = GREATEST(last_delivered_message_id, VALUES(last_delivered_message_id)), " +
+                   "updated_at = NOW()",
+           nativeQuery = true)
+    int markConversationRead(@Param("conversationId") Long conversationId,
+                             @Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "INSERT INTO conversation_read_state " +
+                   "(conversation_id, user_id, last_read_message_id, last_delivered_message_id, updated_at) " +
+                   "VALUES (:conversationId, :userId, 0, :messageId, NOW()) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "last_delivered_message_id = GREATEST(last_delivered_message_id, VALUES(last_delivered_message_id)), " +
+                   "updated_at = NOW()",
+           nativeQuery = true)
+    int advanceDeliveredCursor(@Param("conversationId") Long conversationId,
+                               @Param("userId") Long userId,
+                               @Param("messageId") Long messageId);
+}
@@ -4,10 +4,12 @@ import com.campusnest.messagingservice.models.Conversation;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -50,4 +52,28 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
     Optional<Conversation> findByIdAndParticipantId(
             @Param("conversationId") Long conversationId,
             @Param("userId") Long userId);
-}
\ No newline at end of file
+
+    // Row lock that serializes message inserts per conversation, so their ids are assigned
+    // and committed in order. Take it BEFORE inserting; held until the transaction ends.
+    @Query(value = "SELECT id FROM conversations WHERE id = :conversationId FOR UPDATE",
+           nativeQuery = true)
+    Long lockForInsert(@Param("conversationId") Long conversationId);
+
+    // Single-column UPDATE instead of dirty-checking and rewriting the whole entity.
+    // Only moves forward: a write-behind batch flushed after a newer direct send must not
+    // roll lastMessageAt back.
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessageAt = :lastMessageAt WHERE c.id = :conversationId " +
+           "AND (c.lastMessageAt IS NULL OR c.lastMessageAt < :lastMessageAt)")
+    int updateLastMessageAt(
+            @Param("conversationId") Long conversationId,
+            @Param("lastMessageAt") LocalDateTime lastMessageAt);
+
+    // Publish the new high-water mark in the same transaction as the insert
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessageId = :messageId WHERE c.id = :conversationId " +
+           "AND (c.lastMessageId IS NULL OR c.lastMessageId < :messageId)")
+    int advanceLastMessageId(
+            @Param("conversationId") Long conversationId,
+            @Param("messageId") Long messageId);
+}
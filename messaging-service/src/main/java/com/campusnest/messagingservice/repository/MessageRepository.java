@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -45,23 +46,36 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation = :conversation")
     long countByConversation(@Param("conversation") Conversation conversation);
 
-    @Query("SELECT m FROM Message m WHERE m.conversation = :conversation " +
-           "AND m.senderId != :userId AND m.id NOT IN " +
-           "(SELECT ms.message.id FROM MessageStatus ms WHERE ms.userId = :userId AND ms.status = 'READ')")
-    List<Message> findUnreadMessagesInConversation(
-            @Param("conversation") Conversation conversation,
-            @Param("userId") Long userId);
+    @Query("SELECT MAX(m.id) FROM Message m WHERE m.conversation = :conversation")
+    Long findMaxIdByConversation(@Param("conversation") Conversation conversation);
 
+    // Unread = newer than the user's read cursor, sent by someone else
+    // (range scan on idx_messages_conversation_id)
     @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation = :conversation " +
-           "AND m.senderId != :userId AND m.id NOT IN " +
-           "(SELECT ms.message.id FROM MessageStatus ms WHERE ms.userId = :userId AND ms.status = 'READ')")
+           "AND m.senderId <> :userId AND m.id > COALESCE(" +
+           "(SELECT rs.lastReadMessageId FROM ConversationReadState rs " +
+           "WHERE rs.conversationId = m.conversation.id AND rs.userId = :userId), 0)")
     long countUnreadMessagesInConversation(
             @Param("conversation") Conversation conversation,
             @Param("userId") Long userId);
 
-    @Query("SELECT m FROM Message m WHERE m.conversation.id IN " +
-           "(SELECT c.id FROM Conversation c WHERE c.participant1Id = :userId OR c.participant2Id = :userId) " +
-           "AND m.senderId != :userId AND m.id NOT IN " +
-           "(SELECT ms.message.id FROM MessageStatus ms WHERE ms.userId = :userId AND ms.status = 'READ')")
-    List<Message> findAllUnreadMessagesForUser(@Param("userId") Long userId);
-}
\ No newline at end of file
+    // Unread count per conversation for one user: [conversationId, count]
+    @Query(value = "SELECT m.conversation_id, COUNT(*) FROM messages m " +
+                   "JOIN conversations c ON c.id = m.conversation_id " +
+                   "LEFT JOIN conversation_read_state rs " +
+                   "ON rs.conversation_id = m.conversation_id AND rs.user_id = :userId " +
+                   "WHERE (c.participant1_id = :userId OR c.participant2_id = :userId) " +
+                   "AND m.sender_id <> :userId AND m.id > COALESCE(rs.last_read_message_id, 0) " +
+                   "GROUP BY m.conversation_id",
+           nativeQuery = true)
+    List<Object[]> countUnreadMessagesByConversationForUser(@Param("userId") Long userId);
+
+    Optional<Message> findBySenderIdAndClientMessageId(Long senderId, String clientMessageId);
+
+    // Idempotency check for a batch: both IN lists are served by uk_messages_sender_client_message
+    // (sender_id, client_message_id); the caller matches the exact pairs
+    @Query("SELECT m.senderId, m.clientMessageId FROM Message m " +
+           "WHERE m.senderId IN :senderIds AND m.clientMessageId IN :clientMessageIds")
+    List<Object[]> findSenderAndClientMessageIds(@Param("senderIds") Collection<Long> senderIds,
+                                                 @Param("clientMessageIds") Collection<String> clientMessageIds);
+}
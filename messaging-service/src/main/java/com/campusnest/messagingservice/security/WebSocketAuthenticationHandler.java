@@ -1,5 +1,7 @@
 package com.campusnest.messagingservice.security;
 
+import com.campusnest.messagingservice.config.CborMessageConverter;
+import com.campusnest.messagingservice.services.UserSessionRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.Message;
@@ -23,12 +25,17 @@ public class WebSocketAuthenticationHandler implements ChannelInterceptor {
     @Autowired
     private JwtTokenService jwtTokenService;
 
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
 
         if (StompCommand.CONNECT.equals(accessor.getCommand())) {
             authenticateUser(accessor);
+        } else if (StompCommand.DISCONNECT.equals(accessor.getCommand())) {
+            sessionRegistry.unregister(accessor.getSessionId());
         }
 
         return message;
@@ -94,6 +101,7 @@ public class WebSocketAuthenticationHandler implements ChannelInterceptor {
                     userPrincipal, null, new ArrayList<>()
             );
             accessor.setUser(authentication);
+            sessionRegistry.register(userId, accessor.getSessionId(), acceptsCbor(accessor));
             log.info("✅ WebSocket authenticated user: {} (ID: {})",
                     maskEmail(email), userId);
 
@@ -103,6 +111,12 @@ public class WebSocketAuthenticationHandler implements ChannelInterceptor {
         }
     }
 
+    // Optional CONNECT header "accept-content: application/cbor" (mobile clients)
+    private boolean acceptsCbor(StompHeaderAccessor accessor) {
+        String accept = accessor.getFirstNativeHeader("accept-content");
+        return accept != null && accept.contains(CborMessageConverter.APPLICATION_CBOR.toString());
+    }
+
     private void rejectConnection(String userFriendlyMessage) {
         log.warn("🚫 WebSocket connection REJECTED: {}", userFriendlyMessage);
         throw new IllegalArgumentException("WebSocket Authentication Failed: " + userFriendlyMessage);
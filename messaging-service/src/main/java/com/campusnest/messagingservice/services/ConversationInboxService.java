@@ -0,0 +1,297 @@
+package com.campusnest.messagingservice.services;
+
+import com.campusnest.messagingservice.dto.ConversationDTO;
+import com.campusnest.messagingservice.dto.HousingListingDTO;
+import com.campusnest.messagingservice.dto.MessageDTO;
+import com.campusnest.messagingservice.dto.UserDTO;
+import com.campusnest.messagingservice.models.Conversation;
+import com.campusnest.messagingservice.models.ConversationInboxEntry;
+import com.campusnest.messagingservice.models.Message;
+import com.campusnest.messagingservice.repository.ConversationInboxRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Conversation inbox read model
+ *
+ * Problem:
+ * Rendering one inbox page called user-service twice, housing-service once and ran an
+ * unread COUNT plus a latest-message query per conversation - ~100 calls for 20 rows.
+ *
+ * Read model:
+ * conversation_inbox keeps one denormalized row per (user, conversation), updated in the
+ * same transaction as every send. An inbox page is then:
+ * 1. One indexed query on (user_id, is_active, last_message_at)
+ * 2. One HMGET for the unread counts of the page
+ * 3. One batch user-service call for the requesting user's own profile plus any
+ *    counterparts still missing display info
+ * 4. Deduplicated listing lookups only for rows still missing listing info, run
+ *    concurrently with step 3 under one deadline (EnrichmentExecutor)
+ * Missing display info is written back, so each counterpart/listing is fetched once,
+ * not once per page view.
+ *
+ * Freshness:
+ * - User/listing change events (RemoteProfileCache channels) clear the copied columns of
+ *   the affected rows, so the next page view fetches them again
+ * - The listing image is a signed S3 URL; listing columns older than listing-max-age-hours
+ *   are treated as missing so the URL is re-signed before it expires
+ */
+@Service
+@Slf4j
+@Transactional
+public class ConversationInboxService {
+
+    @Autowired
+    private ConversationInboxRepository inboxRepository;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private UserProfileLoader userProfileLoader;
+
+    @Autowired
+    private RemoteProfileCache remoteProfileCache;
+
+    @Autowired
+    private EnrichmentExecutor enrichmentExecutor;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    // Below the S3 signed URL lifetime (24h), so stored listing images stay loadable
+    @Value("${messaging.inbox.listing-max-age-hours:12}")
+    private long listingMaxAgeHours;
+
+    @PostConstruct
+    public void init() {
+        // Every instance receives the event; the UPDATE is idempotent
+        listenerContainer.addMessageListener((message, pattern) ->
+                        onChange(message.getBody(), inboxRepository::clearCounterparts),
+                new ChannelTopic(RemoteProfileCache.USER_CHANGED_CHANNEL));
+        listenerContainer.addMessageListener((message, pattern) ->
+                        onChange(message.getBody(), inboxRepository::clearListings),
+                new ChannelTopic(RemoteProfileCache.LISTING_CHANGED_CHANNEL));
+    }
+
+    /**
+     * Create both participants' rows for a new conversation.
+     * Display info already fetched by the caller is stored right away.
+     */
+    public void createEntries(Conversation conversation, UserDTO participant2, HousingListingDTO listing) {
+        ConversationInboxEntry forParticipant1 = newEntry(conversation, conversation.getParticipant1Id(),
+                conversation.getParticipant2Id(), listing);
+        applyCounterpart(forParticipant1, participant2);
+
+        ConversationInboxEntry forParticipant2 = newEntry(conversation, conversation.getParticipant2Id(),
+                conversation.getParticipant1Id(), listing);
+
+        inboxRepository.saveAll(List.of(forParticipant1, forParticipant2));
+    }
+
+    /**
+     * Point both rows of the conversation at a newly persisted message
+     */
+    public void recordMessage(Message message) {
+        inboxRepository.recordMessage(message.getConversation().getId(), message.getId(),
+                message.getSenderId(), preview(message.getContent()), message.getMessageType(),
+                message.getSentAt());
+    }
+
+    public void deactivateConversation(Long conversationId) {
+        inboxRepository.deactivateConversation(conversationId);
+    }
+
+    public Page<ConversationDTO> getInbox(Long userId, Pageable pageable) {
+        Page<ConversationInboxEntry> page =
+                inboxRepository.findByUserIdAndIsActiveTrueOrderByLastMessageAtDesc(userId, pageable);
+        if (page.isEmpty()) {
+            return page.map(entry -> toDTO(entry, null, null, null, 0L));
+        }
+
+        Map<Long, UserDTO> users = new HashMap<>();
+        Map<Long, HousingListingDTO> listings = new HashMap<>();
+        fetchMissingDisplayInfo(userId, page.getContent(), users, listings);
+
+        List<Long> conversationIds = new ArrayList<>();
+        page.forEach(entry -> conversationIds.add(entry.getConversationId()));
+        Map<Long, Long> unread = unreadCounterService.getConversationUnread(userId, conversationIds);
+
+        UserDTO currentUser = userProfileLoader.get(userId);
+        return page.map(entry -> toDTO(entry, currentUser, users.get(entry.getCounterpartId()),
+                listings.get(entry.getHousingListingId()), unread.getOrDefault(entry.getConversationId(), 0L)));
+    }
+
+    /**
+     * Fetch counterpart/listing info missing from the page (each id once) and persist it
+     * with bulk updates, so every other row sharing that counterpart/listing is filled too.
+     * Managed entities are left untouched to avoid a second, per-row UPDATE on flush.
+     */
+    private void fetchMissingDisplayInfo(Long userId, List<ConversationInboxEntry> entries,
+                                         Map<Long, UserDTO> users,
+                                         Map<Long, HousingListingDTO> listings) {
+        Set<Long> missingUsers = new LinkedHashSet<>();
+        Set<Long> missingListings = new LinkedHashSet<>();
+        LocalDateTime listingsFreshAfter = LocalDateTime.now().minusHours(listingMaxAgeHours);
+        for (ConversationInboxEntry entry : entries) {
+            if (entry.getCounterpartFirstName() == null) {
+                missingUsers.add(entry.getCounterpartId());
+            }
+            if (entry.getListingTitle() == null || entry.getListingRefreshedAt() == null
+                    || entry.getListingRefreshedAt().isBefore(listingsFreshAfter)) {
+                missingListings.add(entry.getHousingListingId());
+            }
+        }
+
+        // Listing lookups run concurrently while this thread does the user batch
+        // (the request-scoped loader must stay on the request thread)
+        long deadline = enrichmentExecutor.deadline();
+        Map<Long, CompletableFuture<HousingListingDTO>> listingFutures = new HashMap<>();
+        for (Long listingId : missingListings) {
+            listingFutures.put(listingId, enrichmentExecutor.supply(() -> remoteProfileCache.getListing(listingId)));
+        }
+
+        // Missing counterparts and the requesting user in one batch call
+        Set<Long> userIds = new LinkedHashSet<>(missingUsers);
+        userIds.add(userId);
+        Map<Long, UserDTO> fetched = userProfileLoader.load(userIds);
+        for (Long counterpartId : missingUsers) {
+            UserDTO user = fetched.get(counterpartId);
+            if (user != null) {
+                users.put(counterpartId, user);
+                inboxRepository.updateCounterpart(counterpartId, user.getFirstName(),
+                        user.getLastName(), user.getUniversityDomain());
+            }
+        }
+
+        // Write-backs stay on this thread, inside the request transaction
+        LocalDateTime now = LocalDateTime.now();
+        listingFutures.forEach((listingId, future) -> {
+            HousingListingDTO listing = enrichmentExecutor.await(future, deadline, null);
+            if (listing != null) {
+                listings.put(listingId, listing);
+                inboxRepository.updateListing(listingId, listing.getTitle(), listing.getMainImageUrl(), now);
+            }
+        });
+    }
+
+    private ConversationDTO toDTO(ConversationInboxEntry entry, UserDTO currentUser, UserDTO fetchedCounterpart,
+                                  HousingListingDTO fetchedListing, Long unreadCount) {
+        UserDTO counterpart = fetchedCounterpart;
+        if (counterpart == null && entry.getCounterpartFirstName() != null) {
+            counterpart = new UserDTO(entry.getCounterpartId(), entry.getCounterpartFirstName(),
+                    entry.getCounterpartLastName(), entry.getCounterpartUniversityDomain());
+        }
+
+        ConversationDTO dto = new ConversationDTO();
+        dto.setId(entry.getConversationId());
+        dto.setParticipant1Id(entry.getParticipant1Id());
+        dto.setParticipant2Id(entry.getParticipant2Id());
+        dto.setHousingListingId(entry.getHousingListingId());
+        dto.setCreatedAt(entry.getConversationCreatedAt());
+        dto.setLastMessageAt(entry.getLastMessageAt());
+        dto.setIsActive(entry.getIsActive());
+        dto.setUnreadCount(unreadCount);
+
+        boolean counterpartIsParticipant1 = entry.getCounterpartId().equals(entry.getParticipant1Id());
+        dto.setParticipant1(counterpartIsParticipant1 ? counterpart : currentUser);
+        dto.setParticipant2(counterpartIsParticipant1 ? currentUser : counterpart);
+
+        if (fetchedListing != null) {
+            dto.setHousingListing(fetchedListing);
+        } else if (entry.getListingTitle() != null) {
+            HousingListingDTO listing = new HousingListingDTO();
+            listing.setId(entry.getHousingListingId());
+            listing.setTitle(entry.getListingTitle());
+            listing.setMainImageUrl(entry.getListingImageUrl());
+            dto.setHousingListing(listing);
+        }
+
+        if (entry.getLastMessageId() != null) {
+            MessageDTO lastMessage = new MessageDTO();
+            lastMessage.setId(entry.getLastMessageId());
+            lastMessage.setConversationId(entry.getConversationId());
+            lastMessage.setSenderId(entry.getLastMessageSenderId());
+            lastMessage.setSender(entry.getCounterpartId().equals(entry.getLastMessageSenderId())
+                    ? counterpart : currentUser);
+            lastMessage.setContent(entry.getLastMessagePreview());
+            lastMessage.setMessageType(entry.getLastMessageType());
+            lastMessage.setSentAt(entry.getLastMessageAt());
+            dto.setLastMessage(lastMessage);
+        }
+        return dto;
+    }
+
+    private ConversationInboxEntry newEntry(Conversation conversation, Long userId, Long counterpartId,
+                                            HousingListingDTO listing) {
+        ConversationInboxEntry entry = new ConversationInboxEntry();
+        entry.setUserId(userId);
+        entry.setConversationId(conversation.getId());
+        entry.setParticipant1Id(conversation.getParticipant1Id());
+        entry.setParticipant2Id(conversation.getParticipant2Id());
+        entry.setCounterpartId(counterpartId);
+        entry.setHousingListingId(conversation.getHousingListingId());
+        entry.setConversationCreatedAt(conversation.getCreatedAt());
+        entry.setLastMessageAt(conversation.getLastMessageAt());
+        entry.setIsActive(conversation.getIsActive());
+        if (listing != null) {
+            entry.setListingTitle(listing.getTitle());
+            entry.setListingImageUrl(listing.getMainImageUrl());
+            entry.setListingRefreshedAt(LocalDateTime.now());
+        }
+        return entry;
+    }
+
+    private void applyCounterpart(ConversationInboxEntry entry, UserDTO user) {
+        if (user != null) {
+            entry.setCounterpartFirstName(user.getFirstName());
+            entry.setCounterpartLastName(user.getLastName());
+            entry.setCounterpartUniversityDomain(user.getUniversityDomain());
+        }
+    }
+
+    private void onChange(byte[] body, Consumer<List<Long>> clear) {
+        List<Long> ids = new ArrayList<>();
+        for (String id : new String(body, StandardCharsets.UTF_8).split(",")) {
+            try {
+                ids.add(Long.parseLong(id.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed change event id: {}", id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            clear.accept(ids);
+        } catch (Exception e) {
+            log.warn("Failed to clear inbox display info for {}: {}", ids, e.getMessage());
+        }
+    }
+
+    private static String preview(String content) {
+        if (content == null || content.length() <= ConversationInboxEntry.PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, ConversationInboxEntry.PREVIEW_LENGTH);
+    }
+}
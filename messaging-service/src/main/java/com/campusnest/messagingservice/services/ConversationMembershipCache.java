@@ -0,0 +1,182 @@
+package com.campusnest.messagingservice.services;
+
+import com.campusnest.messagingservice.exceptions.ConversationNotFoundException;
+import com.campusnest.messagingservice.exceptions.UnauthorizedAccessException;
+import com.campusnest.messagingservice.models.Conversation;
+import com.campusnest.messagingservice.repository.ConversationRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * In-memory conversation membership for authorization checks
+ *
+ * Problem:
+ * Every send, typing and join frame ran findByIdAndParticipantId against MySQL just to
+ * learn whether the user is one of the two participants - a fact that never changes.
+ *
+ * Structure:
+ *   conversationId → Membership(participant1Id, participant2Id, active)
+ *
+ * - Bounded Caffeine cache shared by all sessions of this instance; the row is read once
+ *   per instance and expiry window, not once per frame
+ * - Unknown ids are not cached (the id may belong to a conversation created later)
+ * - The participant pair is immutable, so only the active flag can go stale:
+ *   deactivateConversation calls invalidate, which evicts locally and - after commit -
+ *   on every other instance via CONVERSATION_CHANGED_CHANNEL
+ * - authorize (sends, typing) also requires the conversation to be active;
+ *   authorizeParticipant (reads) does not
+ *
+ * This cache is the only copy - WebSocket sessions look memberships up here on every
+ * frame, so a deactivation takes effect on open sessions too.
+ */
+@Service
+@Slf4j
+public class ConversationMembershipCache {
+
+    public static final String CONVERSATION_CHANGED_CHANNEL = "campusnest:conversation-changed";
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messaging.membership-cache.maximum-size:50000}")
+    private long maximumSize;
+
+    @Value("${messaging.membership-cache.expire-after-access-minutes:30}")
+    private long expireAfterAccessMinutes;
+
+    private Cache<Long, Membership> memberships;
+
+    public record Membership(Long conversationId, Long participant1Id, Long participant2Id, boolean active) {
+
+        public boolean isParticipant(Long userId) {
+            return participant1Id.equals(userId) || participant2Id.equals(userId);
+        }
+
+        public Long getOtherParticipantId(Long currentUserId) {
+            if (participant1Id.equals(currentUserId)) {
+                return participant2Id;
+            } else if (participant2Id.equals(currentUserId)) {
+                return participant1Id;
+            }
+            return null;
+        }
+
+        static Membership of(Conversation conversation) {
+            return new Membership(conversation.getId(), conversation.getParticipant1Id(),
+                    conversation.getParticipant2Id(), Boolean.TRUE.equals(conversation.getIsActive()));
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        memberships = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(Duration.ofMinutes(expireAfterAccessMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memberships, "messaging.conversation.memberships");
+
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String id = new String(message.getBody(), StandardCharsets.UTF_8).trim();
+            try {
+                memberships.invalidate(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed conversation change event: {}", id);
+            }
+        }, new ChannelTopic(CONVERSATION_CHANGED_CHANNEL));
+    }
+
+    /**
+     * @return the membership, or null if the conversation does not exist
+     */
+    public Membership get(Long conversationId) {
+        if (conversationId == null) {
+            return null;
+        }
+        return memberships.get(conversationId, id -> conversationRepository.findById(id)
+                .map(Membership::of)
+                .orElse(null));
+    }
+
+    public boolean isParticipant(Long conversationId, Long userId) {
+        Membership membership = get(conversationId);
+        return membership != null && membership.isParticipant(userId);
+    }
+
+    /**
+     * Membership for posting to the conversation
+     *
+     * @throws ConversationNotFoundException if the conversation does not exist or the user is not a participant
+     * @throws UnauthorizedAccessException if the conversation has been deactivated
+     */
+    public Membership authorize(Long conversationId, Long userId) {
+        Membership membership = authorizeParticipant(conversationId, userId);
+        if (!membership.active()) {
+            throw new UnauthorizedAccessException("Conversation " + conversationId + " is no longer active");
+        }
+        return membership;
+    }
+
+    /**
+     * Membership for reading the conversation, active or not
+     *
+     * @throws ConversationNotFoundException if the conversation does not exist or the user is not a participant
+     */
+    public Membership authorizeParticipant(Long conversationId, Long userId) {
+        Membership membership = get(conversationId);
+        if (membership == null || !membership.isParticipant(userId)) {
+            throw new ConversationNotFoundException(
+                    "Conversation not found with ID " + conversationId + " or user " + userId + " not authorized");
+        }
+        return membership;
+    }
+
+    /**
+     * Drops the entry here now and on all instances once the current transaction commits
+     */
+    public void invalidate(Long conversationId) {
+        memberships.invalidate(conversationId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(conversationId);
+                }
+            });
+        } else {
+            publish(conversationId);
+        }
+    }
+
+    private void publish(Long conversationId) {
+        try {
+            stringRedisTemplate.convertAndSend(CONVERSATION_CHANGED_CHANNEL, conversationId.toString());
+        } catch (Exception e) {
+            log.warn("Unable to publish conversation change for {}: {}", conversationId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.campusnest.messagingservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Fan-out executor for DTO enrichment
+ *
+ * Problem:
+ * Building a conversation DTO resolved participants, listing, unread count and last
+ * message one after another, so its latency was the sum of all dependency latencies.
+ *
+ * Usage:
+ *   long deadline = enrichmentExecutor.deadline();
+ *   CompletableFuture<A> a = enrichmentExecutor.supply(() -> ...);
+ *   CompletableFuture<B> b = enrichmentExecutor.supply(() -> ...);
+ *   A resultA = enrichmentExecutor.await(a, deadline, fallbackA);
+ *
+ * All lookups run concurrently, so a DTO costs max() rather than sum() of them.
+ * The deadline is shared per request: whatever has not finished by then is replaced
+ * by its fallback (a partial DTO) instead of holding the request thread.
+ *
+ * The pool is bounded; when it is saturated the caller runs the task itself, which
+ * degrades to the old sequential behaviour instead of failing. In virtual-thread mode
+ * every lookup gets its own virtual thread, at most `threads` at a time (same fallback).
+ * Tasks run outside the HTTP request, so they must not touch request-scoped beans.
+ */
+@Component
+@Slf4j
+public class EnrichmentExecutor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${messaging.enrichment.threads:32}")
+    private int threads;
+
+    @Value("${messaging.enrichment.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${messaging.enrichment.deadline-ms:1500}")
+    private long deadlineMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ExecutorService executor;
+
+    // Bounds virtual-thread lookups (null for the platform pool, which is bounded itself)
+    private Semaphore slots;
+
+    private Counter deadlineMisses;
+
+    public EnrichmentExecutor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (virtualThreads) {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dto-enrichment-", 0).factory());
+            slots = new Semaphore(threads);
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "dto-enrichment-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+
+        deadlineMisses = Counter.builder("messaging.enrichment.deadline.misses")
+                .description("Enrichment lookups replaced by a fallback after the request deadline")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Absolute deadline (System.nanoTime based) for one request's enrichment
+     */
+    public long deadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        if (slots == null) {
+            return CompletableFuture.supplyAsync(task, executor);
+        }
+        if (!slots.tryAcquire()) {
+            // Saturated - run on the caller, like the pool's CallerRunsPolicy
+            return CompletableFuture.supplyAsync(task, Runnable::run);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.get();
+                } finally {
+                    slots.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Result of the lookup, or the fallback if it failed or missed the deadline
+     */
+    public <T> T await(CompletableFuture<T> future, long deadline, T fallback) {
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            deadlineMisses.increment();
+            log.debug("Enrichment lookup missed the {} ms deadline", deadlineMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Enrichment lookup failed: {}", e.getCause().getMessage());
+        }
+        return fallback;
+    }
+}
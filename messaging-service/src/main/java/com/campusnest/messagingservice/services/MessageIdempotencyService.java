@@ -0,0 +1,156 @@
+package com.campusnest.messagingservice.services;
+
+import com.campusnest.messagingservice.dto.ChatMessageResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Idempotent message sends keyed on (senderId, clientMessageId)
+ *
+ * Problem:
+ * Mobile clients retry /app/chat/send and POST .../messages after a reconnect, creating
+ * duplicate rows and duplicate fan-outs to the recipient.
+ *
+ * Dedupe Window (Redis):
+ * - SET msg:idem:{senderId}:{clientMessageId} PENDING NX EX pending-ttl → first attempt proceeds
+ * - On success the key is overwritten with the response JSON (EX ttl)   → retries replay it,
+ *   no database access, no second fan-out
+ * - On failure the key is deleted                                        → client may retry
+ *
+ * The PENDING claim only lives for about one send timeout: if the instance dies mid-send
+ * nobody deletes it, and a full-window claim would answer every retry with "in flight"
+ * for a day. Once it lapses a retry runs again and the unique index decides.
+ *
+ * Backstop:
+ * The unique (sender_id, client_message_id) index catches retries that arrive after the
+ * window expired or while Redis was unavailable; the original row is looked up and replayed.
+ */
+@Service
+@Slf4j
+public class MessageIdempotencyService {
+
+    private static final String KEY_PREFIX = "msg:idem:";
+    private static final String PENDING = "PENDING";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MessagingService messagingService;
+
+    @Value("${messaging.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${messaging.idempotency.pending-ttl-seconds:15}")
+    private long pendingTtlSeconds;
+
+    /**
+     * Run the send at most once per (senderId, clientMessageId).
+     * Without a clientMessageId the send always runs.
+     */
+    public SendResult sendOnce(Long senderId, String clientMessageId, Supplier<ChatMessageResponse> send) {
+        if (clientMessageId == null || clientMessageId.isBlank()) {
+            return SendResult.created(send.get());
+        }
+
+        String key = KEY_PREFIX + senderId + ":" + clientMessageId;
+        Boolean claimed = claim(key);
+
+        if (Boolean.FALSE.equals(claimed)) {
+            String stored = get(key);
+            if (stored == null || PENDING.equals(stored)) {
+                // Original attempt still in flight - it will acknowledge the client
+                log.debug("Duplicate send {} from user {} still in flight", clientMessageId, senderId);
+                return SendResult.inFlight();
+            }
+            try {
+                log.debug("Replaying duplicate send {} from user {}", clientMessageId, senderId);
+                return SendResult.duplicate(objectMapper.readValue(stored, ChatMessageResponse.class));
+            } catch (Exception e) {
+                log.warn("Unreadable idempotency entry {}: {}", key, e.getMessage());
+                return SendResult.inFlight();
+            }
+        }
+
+        ChatMessageResponse response;
+        try {
+            response = send.get();
+        } catch (DataIntegrityViolationException e) {
+            // Unique index hit - outside the Redis window or Redis was down
+            ChatMessageResponse existing = messagingService.findMessageByClientMessageId(senderId, clientMessageId)
+                    .map(ChatMessageResponse::fromMessage)
+                    .orElseThrow(() -> e);
+            remember(key, existing);
+            return SendResult.duplicate(existing);
+        } catch (RuntimeException e) {
+            forget(key);
+            throw e;
+        }
+
+        remember(key, response);
+        return SendResult.created(response);
+    }
+
+    /**
+     * @return true if claimed, false if the key exists, null if Redis is unavailable
+     */
+    private Boolean claim(String key) {
+        try {
+            return stringRedisTemplate.opsForValue().setIfAbsent(key, PENDING, Duration.ofSeconds(pendingTtlSeconds));
+        } catch (Exception e) {
+            log.warn("Idempotency claim failed, relying on unique index: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String get(String key) {
+        try {
+            return stringRedisTemplate.opsForValue().get(key);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void remember(String key, ChatMessageResponse response) {
+        try {
+            stringRedisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(response),
+                    Duration.ofHours(ttlHours));
+        } catch (Exception e) {
+            log.warn("Failed to store idempotency entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void forget(String key) {
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("Failed to release idempotency entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    public record SendResult(ChatMessageResponse response, boolean duplicate) {
+
+        static SendResult created(ChatMessageResponse response) {
+            return new SendResult(response, false);
+        }
+
+        static SendResult duplicate(ChatMessageResponse response) {
+            return new SendResult(response, true);
+        }
+
+        static SendResult inFlight() {
+            return new SendResult(null, true);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.campusnest.messagingservice.services;
+
+import com.campusnest.messagingservice.dto.ChatMessageResponse;
+import com.campusnest.messagingservice.enums.MessageType;
+import com.campusnest.messagingservice.exceptions.InvalidMessageException;
+import com.campusnest.messagingservice.models.Message;
+import com.campusnest.messagingservice.repository.ConversationReadStateRepository;
+import com.campusnest.messagingservice.repository.ConversationRepository;
+import com.campusnest.messagingservice.repository.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Write-behind message persistence (optional, messaging.write-behind.enabled)
+ *
+ * Problem:
+ * The WebSocket send path waited for a MySQL commit (INSERT message + statuses + UPDATE
+ * conversation) before the recipient saw anything, so chat latency tracked DB commit latency.
+ *
+ * Write-Behind Flow:
+ * 1. append(): XADD the message to a Redis Stream (durable with AOF) and return a response
+ *    immediately - the controller delivers it to the recipient right away
+ * 2. A single consumer thread per instance reads the stream through a consumer group
+ *    (XREADGROUP), up to batch-size entries at a time
+ * 3. The whole batch is written in ONE transaction (group commit: one fsync for N messages),
+ *    then XACK + XDEL
+ *
+ * Idempotency:
+ * Every entry carries a clientMessageId (client supplied, or generated here). Rows already
+ * present for (sender_id, client_message_id) are skipped, and a unique constraint backs this
+ * up, so replaying an entry after a crash never duplicates a message.
+ *
+ * Poison entries:
+ * Only a duplicate-key violation on uk_messages_sender_client_message means "already
+ * persisted". Malformed entries and any other constraint violation (e.g. a conversation that
+ * no longer exists) can never succeed on retry; they are copied to DEAD_LETTER_KEY and
+ * acknowledged. Any other failure (DB unavailable) leaves the batch pending for replay.
+ *
+ * Crash Recovery:
+ * - On start the consumer first re-reads its own pending entries (read offset 0)
+ * - Entries left pending by a dead consumer are XCLAIMed once idle for claim-idle-ms
+ *
+ * Trade-off:
+ * Until its batch is flushed (typically milliseconds) a message is visible over WebSocket but
+ * not yet in REST history, and the response carries clientMessageId but no database id.
+ */
+@Service
+@Slf4j
+public class MessageWriteBehindService {
+
+    private static final String STREAM_KEY = "messaging:write-behind";
+    private static final String GROUP = "message-persisters";
+    private static final String DEAD_LETTER_KEY = STREAM_KEY + ":dead-letter";
+    private static final String CLIENT_MESSAGE_CONSTRAINT = "uk_messages_sender_client_message";
+    private static final int MYSQL_DUPLICATE_KEY = 1062;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationReadStateRepository readStateRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private ConversationInboxService inboxService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${messaging.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${messaging.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${messaging.write-behind.block-ms:1000}")
+    private long blockMs;
+
+    @Value("${messaging.write-behind.claim-idle-ms:60000}")
+    private long claimIdleMs;
+
+    @Value("${messaging.write-behind.consumer-name:}")
+    private String configuredConsumerName;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean running = false;
+    private Thread consumerThread;
+    private String consumerName;
+
+    public MessageWriteBehindService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Append a message to the durable log. The caller has already authorized the sender.
+     */
+    public ChatMessageResponse append(ConversationMembershipCache.Membership membership, Long senderId, String content,
+                                      MessageType messageType, String clientMessageId) {
+        if (content == null || content.trim().isEmpty()) {
+            throw new InvalidMessageException("Message content cannot be empty");
+        }
+        if (content.length() > 5000) {
+            throw new InvalidMessageException("Message content must be between 1 and 5000 characters");
+        }
+
+        String messageId = clientMessageId != null && !clientMessageId.isBlank()
+                ? clientMessageId : UUID.randomUUID().toString();
+        MessageType type = messageType != null ? messageType : MessageType.TEXT;
+        LocalDateTime sentAt = LocalDateTime.now();
+        Long recipientId = membership.getOtherParticipantId(senderId);
+
+        Map<String, String> fields = new HashMap<>();
+        fields.put("conversationId", membership.conversationId().toString());
+        fields.put("senderId", senderId.toString());
+        if (recipientId != null) {
+            fields.put("recipientId", recipientId.toString());
+        }
+        fields.put("content", content);
+        fields.put("messageType", type.name());
+        fields.put("clientMessageId", messageId);
+        fields.put("sentAt", Long.toString(sentAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+
+        stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(STREAM_KEY).ofMap(fields));
+
+        ChatMessageResponse response = new ChatMessageResponse();
+        response.setConversationId(membership.conversationId());
+        response.setSenderId(senderId);
+        response.setContent(content);
+        response.setMessageType(type);
+        response.setSentAt(sentAt);
+        response.setIsEdited(false);
+        response.setClientMessageId(messageId);
+        return response;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        consumerName = resolveConsumerName();
+        try {
+            stringRedisTemplate.opsForStream().createGroup(STREAM_KEY, ReadOffset.from("0"), GROUP);
+        } catch (Exception e) {
+            // BUSYGROUP - group already exists
+            log.debug("Write-behind consumer group already exists: {}", e.getMessage());
+        }
+
+        running = true;
+        consumerThread = new Thread(this::consumeLoop, "message-write-behind");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+        log.info("Write-behind message consumer {} started", consumerName);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (consumerThread != null) {
+            consumerThread.interrupt();
+        }
+    }
+
+    private void consumeLoop() {
+        Consumer consumer = Consumer.from(GROUP, consumerName);
+
+        // Replay our own entries that were read but never acknowledged (crash or failed batch)
+        boolean replayPending = true;
+        long lastClaim = System.currentTimeMillis();
+
+        while (running) {
+            try {
+                if (replayPending) {
+                    drain(consumer, ReadOffset.from("0"));
+                    replayPending = false;
+                }
+
+                List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                        consumer,
+                        StreamReadOptions.empty().count(batchSize).block(Duration.ofMillis(blockMs)),
+                        StreamOffset.create(STREAM_KEY, ReadOffset.lastConsumed()));
+                if (records != null && !records.isEmpty()) {
+                    persistBatch(records);
+                }
+
+                // Take over entries abandoned by consumers that died mid-batch
+                if (System.currentTimeMillis() - lastClaim > claimIdleMs) {
+                    claimAbandoned(consumer);
+                    lastClaim = System.currentTimeMillis();
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.error("Write-behind consumer error: {}", e.getMessage());
+                replayPending = true;
+                sleepQuietly(1000);
+            }
+        }
+    }
+
+    private void drain(Consumer consumer, ReadOffset offset) {
+        while (running) {
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                    consumer,
+                    StreamReadOptions.empty().count(batchSize),
+                    StreamOffset.create(STREAM_KEY, offset));
+            if (records == null || records.isEmpty()) {
+                return;
+            }
+            persistBatch(records);
+        }
+    }
+
+    private void claimAbandoned(Consumer consumer) {
+        PendingMessages pending = stringRedisTemplate.opsForStream()
+                .pending(STREAM_KEY, GROUP, Range.unbounded(), batchSize);
+        List<RecordId> idle = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().toMillis() >= claimIdleMs) {
+                idle.add(message.getId());
+            }
+        }
+        if (idle.isEmpty()) {
+            return;
+        }
+
+        List<MapRecord<String, Object, Object>> claimed = stringRedisTemplate.opsForStream().claim(
+                STREAM_KEY, GROUP, consumer.getName(), Duration.ofMillis(claimIdleMs),
+                idle.toArray(new RecordId[0]));
+        if (!claimed.isEmpty()) {
+            log.warn("Claimed {} abandoned write-behind entries", claimed.size());
+            persistBatch(claimed);
+        }
+    }
+
+    /**
+     * Group commit: one transaction for the whole batch, then acknowledge it
+     */
+    private void persistBatch(List<MapRecord<String, Object, Object>> records) {
+        List<PendingWrite> writes = new ArrayList<>(records.size());
+        List<RecordId> done = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            try {
+                writes.add(PendingWrite.from(record));
+            } catch (Exception e) {
+                log.error("Dropping malformed write-behind entry {}: {}", record.getId(), e.getMessage());
+                deadLetter(record.getValue(), "malformed: " + e.getMessage());
+                done.add(record.getId());
+            }
+        }
+
+        Set<Long> conversationIds;
+        try {
+            conversationIds = transactionTemplate.execute(status -> writeAll(writes));
+            writes.forEach(write -> done.add(write.recordId));
+        } catch (DataIntegrityViolationException e) {
+            // Raced with another writer on the same clientMessageId, or one bad entry -
+            // fall back to one by one to tell them apart
+            log.warn("Write-behind batch conflict, retrying {} entries individually", writes.size());
+            conversationIds = new HashSet<>();
+            for (PendingWrite write : writes) {
+                try {
+                    Set<Long> written = transactionTemplate.execute(status -> writeAll(List.of(write)));
+                    if (written != null) {
+                        conversationIds.addAll(written);
+                    }
+                } catch (DataIntegrityViolationException violation) {
+                    if (isDuplicateClientMessage(violation)) {
+                        log.debug("Message {} already persisted", write.clientMessageId);
+                    } else {
+                        log.error("Write-behind entry {} violates a constraint, moving to dead letter: {}",
+                                write.recordId, violation.getMostSpecificCause().getMessage());
+                        deadLetter(write.fields, violation.getMostSpecificCause().getMessage());
+                    }
+                }
+                done.add(write.recordId);
+            }
+        }
+
+        if (!done.isEmpty()) {
+            RecordId[] ids = done.toArray(new RecordId[0]);
+            stringRedisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP, ids);
+            stringRedisTemplate.opsForStream().delete(STREAM_KEY, ids);
+        }
+
+        if (conversationIds != null && !conversationIds.isEmpty()) {
+            evictCaches(conversationIds);
+        }
+        log.debug("Persisted write-behind batch of {} messages", writes.size());
+    }
+
+    /**
+     * Duplicate key on (sender_id, client_message_id) - the only violation that means
+     * "this entry is already persisted"
+     */
+    private boolean isDuplicateClientMessage(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation
+                    && violation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE) {
+                String constraint = violation.getConstraintName();
+                return constraint != null && constraint.toLowerCase().contains(CLIENT_MESSAGE_CONSTRAINT);
+            }
+            if (cause instanceof SQLException sql && sql.getErrorCode() == MYSQL_DUPLICATE_KEY) {
+                String message = sql.getMessage();
+                return message != null && message.contains(CLIENT_MESSAGE_CONSTRAINT);
+            }
+        }
+        return false;
+    }
+
+    private void deadLetter(Map<Object, Object> fields, String reason) {
+        Map<String, String> entry = new HashMap<>();
+        fields.forEach((key, value) -> entry.put(String.valueOf(key), String.valueOf(value)));
+        entry.put("error", reason != null ? reason : "unknown");
+        try {
+            stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(DEAD_LETTER_KEY).ofMap(entry));
+        } catch (Exception e) {
+            log.error("Failed to dead-letter write-behind entry: {}", e.getMessage());
+        }
+    }
+
+    private Set<Long> writeAll(List<PendingWrite> writes) {
+        // Skip anything already persisted (replay after crash / claimed entry)
+        Set<Long> senderIds = new HashSet<>();
+        Set<String> clientIds = new HashSet<>();
+        writes.forEach(write -> {
+            senderIds.add(write.senderId);
+            clientIds.add(write.clientMessageId);
+        });
+        Set<String> existing = new HashSet<>();
+        for (Object[] row : messageRepository.findSenderAndClientMessageIds(senderIds, clientIds)) {
+            existing.add(row[0] + ":" + row[1]);
+        }
+
+        List<PendingWrite> fresh = new ArrayList<>(writes.size());
+        for (PendingWrite write : writes) {
+            if (existing.add(write.senderId + ":" + write.clientMessageId)) {
+                fresh.add(write);
+            }
+        }
+
+        // Lock every affected conversation row before inserting (same lock as sendMessage, so
+        // ids stay ordered per conversation); ascending id order avoids deadlocks between batches
+        Map<Long, LocalDateTime> lastMessageAt = new TreeMap<>();
+        fresh.forEach(write -> lastMessageAt.merge(write.conversationId, write.sentAt,
+                (a, b) -> a.isAfter(b) ? a : b));
+        lastMessageAt.forEach((conversationId, sentAt) -> {
+            conversationRepository.lockForInsert(conversationId);
+            conversationRepository.updateLastMessageAt(conversationId, sentAt);
+        });
+
+        // Newest message per conversation - one inbox update and one high-water mark each
+        Map<Long, Message> latest = new HashMap<>();
+        // Highest message id + message count per (conversation, recipient) - one cursor upsert
+        // and one unread counter increment each
+        Map<String, Long[]> delivered = new HashMap<>();
+        for (PendingWrite write : fresh) {
+            Message message = new Message();
+            message.setConversation(conversationRepository.getReferenceById(write.conversationId));
+            message.setSenderId(write.senderId);
+            message.setContent(write.content);
+            message.setMessageType(write.messageType);
+            message.setClientMessageId(write.clientMessageId);
+            message.setSentAt(write.sentAt);
+            Message saved = messageRepository.save(message);
+
+            if (write.recipientId != null) {
+                delivered.merge(write.conversationId + ":" + write.recipientId,
+                        new Long[]{write.conversationId, write.recipientId, saved.getId(), 1L},
+                        (a, b) -> new Long[]{a[0], a[1], Math.max(a[2], b[2]), a[3] + b[3]});
+            }
+            latest.merge(write.conversationId, saved, (a, b) -> a.getId() > b.getId() ? a : b);
+        }
+
+        latest.forEach((conversationId, message) ->
+                conversationRepository.advanceLastMessageId(conversationId, message.getId()));
+        delivered.values().forEach(cursor -> {
+            readStateRepository.advanceDeliveredCursor(cursor[0], cursor[1], cursor[2]);
+            unreadCounterService.onMessageDelivered(cursor[1], cursor[0], cursor[3]);
+        });
+        latest.values().forEach(inboxService::recordMessage);
+        return new LinkedHashSet<>(lastMessageAt.keySet());
+    }
+
+    private void evictCaches(Set<Long> conversationIds) {
+        Cache conversations = cacheManager.getCache("conversations");
+        if (conversations != null) {
+            conversations.clear();
+        }
+        Cache messages = cacheManager.getCache("conversation-messages");
+        if (messages != null) {
+            conversationIds.forEach(messages::evict);
+        }
+    }
+
+    private String resolveConsumerName() {
+        if (configuredConsumerName != null && !configuredConsumerName.isBlank()) {
+            return configuredConsumerName;
+        }
+        try {
+            // Stable across restarts of the same container, so pending entries are replayed
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "consumer-" + UUID.randomUUID();
+        }
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class PendingWrite {
+        private RecordId recordId;
+        private Map<Object, Object> fields;
+        private Long conversationId;
+        private Long senderId;
+        private Long recipientId;
+        private String content;
+        private MessageType messageType;
+        private String clientMessageId;
+        private LocalDateTime sentAt;
+
+        static PendingWrite from(MapRecord<String, Object, Object> record) {
+            Map<Object, Object> fields = record.getValue();
+            PendingWrite write = new PendingWrite();
+            write.recordId = record.getId();
+            write.fields = fields;
+            write.conversationId = Long.parseLong((String) fields.get("conversationId"));
+            write.senderId = Long.parseLong((String) fields.get("senderId"));
+            Object recipient = fields.get("recipientId");
+            write.recipientId = recipient != null ? Long.parseLong((String) recipient) : null;
+            write.content = (String) fields.get("content");
+            write.messageType = MessageType.valueOf((String) fields.get("messageType"));
+            write.clientMessageId = (String) fields.get("clientMessageId");
+            write.sentAt = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(Long.parseLong((String) fields.get("sentAt"))), ZoneId.systemDefault());
+            return write;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface MessagingService {
 
@@ -21,6 +22,17 @@ public interface MessagingService {
      */
     Message sendMessage(Long conversationId, Long senderId, String content, MessageType messageType);
 
+    /**
+     * Send a message carrying a client-generated idempotency key
+     */
+    Message sendMessage(Long conversationId, Long senderId, String content, MessageType messageType,
+                        String clientMessageId);
+
+    /**
+     * Look up a message previously sent with a client idempotency key
+     */
+    Optional<Message> findMessageByClientMessageId(Long senderId, String clientMessageId);
+
     /**
      * Send a text message (default type)
      */
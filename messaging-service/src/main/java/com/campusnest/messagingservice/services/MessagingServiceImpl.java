@@ -1,10 +1,7 @@
 package com.campusnest.messagingservice.services;
 
-import com.campusnest.messagingservice.clients.HousingServiceClient;
-import com.campusnest.messagingservice.clients.UserServiceClient;
 import com.campusnest.messagingservice.dto.HousingListingDTO;
 import com.campusnest.messagingservice.dto.UserDTO;
-import com.campusnest.messagingservice.enums.MessageStatusType;
 import com.campusnest.messagingservice.enums.MessageType;
 import com.campusnest.messagingservice.exceptions.ConversationNotFoundException;
 import com.campusnest.messagingservice.exceptions.InvalidMessageException;
@@ -13,23 +10,23 @@ import com.campusnest.messagingservice.exceptions.ServiceUnavailableException;
 import com.campusnest.messagingservice.exceptions.UnauthorizedAccessException;
 import com.campusnest.messagingservice.models.Conversation;
 import com.campusnest.messagingservice.models.Message;
-import com.campusnest.messagingservice.models.MessageStatus;
+import com.campusnest.messagingservice.repository.ConversationReadStateRepository;
 import com.campusnest.messagingservice.repository.ConversationRepository;
 import com.campusnest.messagingservice.repository.MessageRepository;
-import com.campusnest.messagingservice.repository.MessageStatusRepository;
 import feign.FeignException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @Slf4j
@@ -43,13 +40,19 @@ public class MessagingServiceImpl implements MessagingService {
     private MessageRepository messageRepository;
 
     @Autowired
-    private MessageStatusRepository messageStatusRepository;
+    private ConversationReadStateRepository readStateRepository;
 
     @Autowired
-    private UserServiceClient userServiceClient;
+    private UnreadCounterService unreadCounterService;
 
     @Autowired
-    private HousingServiceClient housingServiceClient;
+    private ConversationInboxService inboxService;
+
+    @Autowired
+    private RemoteProfileCache remoteProfileCache;
+
+    @Autowired
+    private ConversationMembershipCache membershipCache;
 
     @Override
     public Conversation createOrGetConversation(Long user1Id, Long user2Id, Long listingId) {
@@ -61,10 +64,10 @@ public class MessagingServiceImpl implements MessagingService {
             throw new IllegalArgumentException("Users cannot create conversations with themselves");
         }
 
-        // Validate that both users exist via Feign client
+        // Validate that both users exist (cached; Feign only on a miss)
         UserDTO user2;
         try {
-            user2 = userServiceClient.getUserById(user2Id);
+            user2 = remoteProfileCache.getUser(user2Id);
             if (user2 == null) {
                 throw new IllegalArgumentException("User not found with ID: " + user2Id);
             }
@@ -84,16 +87,18 @@ public class MessagingServiceImpl implements MessagingService {
 
         log.info("Validated user: {} {}", user2.getFirstName(), user2.getLastName());
 
-        // Validate housing listing exists and is active via Feign client
+        // Validate housing listing exists and is active (cached, 404s included)
         HousingListingDTO listing;
         try {
-            listing = housingServiceClient.getHousingListingById(listingId);
+            listing = remoteProfileCache.getListing(listingId);
             if (listing == null) {
+                log.error("Housing listing {} not found in housing-service", listingId);
                 throw new IllegalArgumentException("Housing listing not found with ID: " + listingId);
             }
-        } catch (FeignException.NotFound e) {
-            log.error("Housing listing {} not found in housing-service", listingId);
-            throw new IllegalArgumentException("Housing listing not found with ID: " + listingId);
+            if (Boolean.FALSE.equals(listing.getIsActive())) {
+                log.error("Housing listing {} is no longer active", listingId);
+                throw new IllegalArgumentException("Housing listing is no longer available: " + listingId);
+            }
         } catch (FeignException e) {
             log.error("Failed to fetch housing listing {} from housing-service: {}", listingId, e.getMessage());
             throw new ServiceUnavailableException("housing-service", e);
@@ -111,6 +116,7 @@ public class MessagingServiceImpl implements MessagingService {
                     conversation.setIsActive(true);
 
                     Conversation saved = conversationRepository.save(conversation);
+                    inboxService.createEntries(saved, user2, listing);
 
                     // Send system message to initialize conversation
                     sendMessage(saved.getId(), user1Id,
@@ -123,12 +129,20 @@ public class MessagingServiceImpl implements MessagingService {
 
     @Override
     @Caching(evict = {
-            @CacheEvict(value = "unread-counts", allEntries = true),
-            @CacheEvict(value = "conversation-unread-counts", allEntries = true),
             @CacheEvict(value = "conversations", allEntries = true),
             @CacheEvict(value = "conversation-messages", key = "#conversationId")
     })
     public Message sendMessage(Long conversationId, Long senderId, String content, MessageType messageType) {
+        return sendMessage(conversationId, senderId, content, messageType, null);
+    }
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(value = "conversations", allEntries = true),
+            @CacheEvict(value = "conversation-messages", key = "#conversationId")
+    })
+    public Message sendMessage(Long conversationId, Long senderId, String content, MessageType messageType,
+                               String clientMessageId) {
         log.info("Sending {} message in conversation {} from user {}",
                 messageType, conversationId, senderId);
 
@@ -141,36 +155,45 @@ public class MessagingServiceImpl implements MessagingService {
             throw new InvalidMessageException("Message content must be between 1 and 5000 characters");
         }
 
-        Conversation conversation = getConversation(conversationId, senderId);
+        // Membership check from memory; the message only needs the FK, so a reference
+        // (no SELECT) is enough
+        ConversationMembershipCache.Membership membership = membershipCache.authorize(conversationId, senderId);
+        Conversation conversation = conversationRepository.getReferenceById(conversationId);
 
         Message message = new Message();
         message.setConversation(conversation);
         message.setSenderId(senderId);
         message.setContent(content);
         message.setMessageType(messageType);
+        message.setClientMessageId(clientMessageId);
         message.setSentAt(LocalDateTime.now());
 
-        Message savedMessage = messageRepository.save(message);
-
-        // Update conversation last message time
-        conversation.updateLastMessageTime();
-        conversationRepository.save(conversation);
+        // Conversation row lock first: inserts into one conversation are serialized, so its
+        // message ids are assigned and committed in order (see ConversationReadState)
+        conversationRepository.lockForInsert(conversationId);
+        conversationRepository.updateLastMessageAt(conversationId, message.getSentAt());
 
-        // Create message status for sender (SENT)
-        MessageStatus senderStatus = MessageStatus.createSentStatus(savedMessage, senderId);
-        messageStatusRepository.save(senderStatus);
+        Message savedMessage = messageRepository.save(message);
+        conversationRepository.advanceLastMessageId(conversationId, savedMessage.getId());
+        inboxService.recordMessage(savedMessage);
 
-        // Create message status for recipient (DELIVERED)
-        Long recipientId = conversation.getOtherParticipantId(senderId);
+        // Recipient's delivered cursor (no per-message status rows)
+        Long recipientId = membership.getOtherParticipantId(senderId);
         if (recipientId != null) {
-            MessageStatus recipientStatus = MessageStatus.createDeliveredStatus(savedMessage, recipientId);
-            messageStatusRepository.save(recipientStatus);
+            readStateRepository.advanceDeliveredCursor(conversationId, recipientId, savedMessage.getId());
+            unreadCounterService.onMessageDelivered(recipientId, conversationId, 1);
         }
 
         log.info("Message sent successfully with ID: {}", savedMessage.getId());
         return savedMessage;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Message> findMessageByClientMessageId(Long senderId, String clientMessageId) {
+        return messageRepository.findBySenderIdAndClientMessageId(senderId, clientMessageId);
+    }
+
     @Override
     public Message sendMessage(Long conversationId, Long senderId, String content) {
         return sendMessage(conversationId, senderId, content, MessageType.TEXT);
@@ -218,32 +241,22 @@ public class MessagingServiceImpl implements MessagingService {
     }
 
     @Override
-    @Caching(evict = {
-            @CacheEvict(value = "unread-counts", key = "#userId"),
-            @CacheEvict(value = "conversation-unread-counts", key = "#conversationId + ':' + #userId")
-    })
-    @Transactional(noRollbackFor = org.springframework.dao.DataIntegrityViolationException.class)
-    public synchronized void markMessagesAsRead(Long conversationId, Long userId) {
+    public void markMessagesAsRead(Long conversationId, Long userId) {
         log.info("Marking messages as read in conversation {} for user {}", conversationId, userId);
 
-        Conversation conversation = getConversation(conversationId, userId);
-        List<Message> unreadMessages = messageRepository.findUnreadMessagesInConversation(conversation, userId);
-
-        int markedCount = 0;
-        for (Message message : unreadMessages) {
-            try {
-                if (!messageStatusRepository.existsByMessageAndUserIdAndStatus(message, userId, MessageStatusType.READ)) {
-                    MessageStatus readStatus = MessageStatus.createReadStatus(message, userId);
-                    messageStatusRepository.save(readStatus);
-                    markedCount++;
-                }
-            } catch (org.springframework.dao.DataIntegrityViolationException e) {
-                log.debug("Message {} already marked as read for user {} (concurrent update)",
-                        message.getId(), userId);
-            }
+        // One set-based upsert, no JVM lock: the cursor only moves forward (GREATEST),
+        // so concurrent calls for the same (conversation, user) converge on the same row
+        int updated = readStateRepository.markConversationRead(conversationId, userId);
+        if (updated == 0) {
+            // Either not a participant (throws) or an empty conversation (nothing to read) -
+            // answered from memory, so joining an empty conversation costs no extra SELECT
+            membershipCache.authorizeParticipant(conversationId, userId);
+            return;
         }
+        unreadCounterService.onConversationRead(userId, conversationId, 0);
 
-        log.info("Marked {} messages as read (out of {} unread)", markedCount, unreadMessages.size());
+        log.info("Read cursor for user {} in conversation {} advanced to latest message",
+                userId, conversationId);
     }
 
     @Override
@@ -258,26 +271,26 @@ public class MessagingServiceImpl implements MessagingService {
             throw new UnauthorizedAccessException("User " + userId + " not authorized to access message " + messageId);
         }
 
-        if (!messageStatusRepository.existsByMessageAndUserIdAndStatus(message, userId, MessageStatusType.READ)) {
-            MessageStatus readStatus = MessageStatus.createReadStatus(message, userId);
-            messageStatusRepository.save(readStatus);
-        }
+        // Cursor semantics: reading a message implies reading everything before it
+        Conversation conversation = message.getConversation();
+        readStateRepository.advanceReadCursor(conversation.getId(), userId, messageId);
+
+        // Messages after this one may still be unread - recount just this conversation
+        unreadCounterService.onConversationRead(userId, conversation.getId(),
+                messageRepository.countUnreadMessagesInConversation(conversation, userId));
     }
 
     @Override
-    @Transactional(readOnly = true)
-    @Cacheable(value = "conversation-unread-counts", key = "#conversationId + ':' + #userId")
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public long getUnreadMessageCount(Long conversationId, Long userId) {
-        Conversation conversation = getConversation(conversationId, userId);
-        return messageRepository.countUnreadMessagesInConversation(conversation, userId);
+        // The hash is keyed by the requesting user, so a foreign conversation simply reads 0
+        return unreadCounterService.getConversationUnread(userId, conversationId);
     }
 
     @Override
-    @Transactional(readOnly = true)
-    @Cacheable(value = "unread-counts", key = "#userId")
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public long getTotalUnreadMessageCount(Long userId) {
-        List<Message> unreadMessages = messageRepository.findAllUnreadMessagesForUser(userId);
-        return unreadMessages.size();
+        return unreadCounterService.getTotalUnread(userId);
     }
 
     @Override
@@ -292,7 +305,7 @@ public class MessagingServiceImpl implements MessagingService {
     @Override
     @Transactional(readOnly = true)
     public boolean canUserAccessConversation(Long conversationId, Long userId) {
-        return conversationRepository.findByIdAndParticipantId(conversationId, userId).isPresent();
+        return membershipCache.isParticipant(conversationId, userId);
     }
 
     @Override
@@ -302,6 +315,8 @@ public class MessagingServiceImpl implements MessagingService {
         Conversation conversation = getConversation(conversationId, userId);
         conversation.setIsActive(false);
         conversationRepository.save(conversation);
+        inboxService.deactivateConversation(conversationId);
+        membershipCache.invalidate(conversationId);
     }
 
     @Override
@@ -322,7 +337,7 @@ public class MessagingServiceImpl implements MessagingService {
         // Check if housing listing still exists via Feign client
         if (conversation.getHousingListingId() != null) {
             try {
-                HousingListingDTO listing = housingServiceClient.getHousingListingById(conversation.getHousingListingId());
+                HousingListingDTO listing = remoteProfileCache.getListing(conversation.getHousingListingId());
 
                 if (listing == null) {
                     log.warn("Conversation {} references deleted housing listing {}",
@@ -0,0 +1,320 @@
+package com.campusnest.messagingservice.services;
+
+import com.campusnest.messagingservice.clients.HousingServiceClient;
+import com.campusnest.messagingservice.clients.RemoteCallGuard;
+import com.campusnest.messagingservice.clients.UserServiceClient;
+import com.campusnest.messagingservice.dto.HousingListingDTO;
+import com.campusnest.messagingservice.dto.UserDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import feign.FeignException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Two-level cache for remote user and listing DTOs
+ *
+ * Problem:
+ * Public profiles and listing summaries rarely change, yet every DTO conversion,
+ * createOrGetConversation and validateConversationIntegrity fetched them over Feign,
+ * so messaging latency tracked user-service / housing-service latency.
+ *
+ * Levels:
+ * - L1: bounded Caffeine cache per instance (Optional values, so 404s are cached too)
+ * - L2: Redis JSON strings shared by all instances (profile:user:{id}, profile:listing:{id})
+ * - Miss in both → Feign (users in batches via getUsersByIds)
+ *
+ * Freshness:
+ * - refreshAfterWrite: hot entries are reloaded from the remote service in the background
+ *   while the old value keeps being served (a failed refresh keeps the old value)
+ * - Negative entries (404) expire after a short TTL instead of the normal one
+ * - Change events on Redis pub/sub (ids, comma-separated) evict both levels right away:
+ *   housing-service publishes LISTING_CHANGED_CHANNEL on every listing write;
+ *   USER_CHANGED_CHANNEL is reserved for user-service, which has no publisher yet
+ *   (public profile fields cannot currently change there)
+ *
+ * Errors other than 404 are never cached. Remote calls go through RemoteCallGuard, so an
+ * open circuit / full bulkhead / missed deadline on a miss surfaces as
+ * ServiceUnavailableException (callers degrade to partial DTOs), while cached entries
+ * keep being served - a failed background refresh keeps the old value.
+ */
+@Service
+@Slf4j
+public class RemoteProfileCache {
+
+    public static final String USER_CHANGED_CHANNEL = "campusnest:user-changed";
+    public static final String LISTING_CHANGED_CHANNEL = "campusnest:listing-changed";
+
+    private static final String USER_KEY_PREFIX = "profile:user:";
+    private static final String LISTING_KEY_PREFIX = "profile:listing:";
+    private static final String NOT_FOUND = "null";
+    private static final int USER_BATCH_SIZE = 200;
+    private static final String USER_SERVICE = "user-service";
+    private static final String HOUSING_SERVICE = "housing-service";
+
+    @Autowired
+    private UserServiceClient userServiceClient;
+
+    @Autowired
+    private HousingServiceClient housingServiceClient;
+
+    @Autowired
+    private RemoteCallGuard remoteCallGuard;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messaging.remote-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${messaging.remote-cache.expire-after-write-minutes:60}")
+    private long expireAfterWriteMinutes;
+
+    @Value("${messaging.remote-cache.refresh-after-write-minutes:5}")
+    private long refreshAfterWriteMinutes;
+
+    @Value("${messaging.remote-cache.negative-ttl-seconds:60}")
+    private long negativeTtlSeconds;
+
+    private LoadingCache<Long, Optional<UserDTO>> users;
+
+    private LoadingCache<Long, Optional<HousingListingDTO>> listings;
+
+    @PostConstruct
+    public void init() {
+        users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(this.<UserDTO>expiry())
+                .refreshAfterWrite(Duration.ofMinutes(refreshAfterWriteMinutes))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public Optional<UserDTO> load(Long id) {
+                        return loadUsers(List.of(id)).get(id);
+                    }
+
+                    @Override
+                    public Map<Long, Optional<UserDTO>> loadAll(Set<? extends Long> ids) {
+                        return loadUsers(ids);
+                    }
+
+                    @Override
+                    public Optional<UserDTO> reload(Long id, Optional<UserDTO> oldValue) {
+                        return fetchUsers(List.of(id)).get(id);
+                    }
+                });
+
+        listings = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(this.<HousingListingDTO>expiry())
+                .refreshAfterWrite(Duration.ofMinutes(refreshAfterWriteMinutes))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public Optional<HousingListingDTO> load(Long id) {
+                        Optional<HousingListingDTO> cached = readL2(LISTING_KEY_PREFIX + id, HousingListingDTO.class);
+                        return cached != null ? cached : fetchListing(id);
+                    }
+
+                    @Override
+                    public Optional<HousingListingDTO> reload(Long id, Optional<HousingListingDTO> oldValue) {
+                        return fetchListing(id);
+                    }
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "messaging.remote.users");
+        CaffeineCacheMetrics.monitor(meterRegistry, listings, "messaging.remote.listings");
+
+        listenerContainer.addMessageListener((message, pattern) ->
+                        onChange(message.getBody(), this::evictUser),
+                new ChannelTopic(USER_CHANGED_CHANNEL));
+        listenerContainer.addMessageListener((message, pattern) ->
+                        onChange(message.getBody(), this::evictListing),
+                new ChannelTopic(LISTING_CHANGED_CHANNEL));
+    }
+
+    /**
+     * @return the user, or null if user-service does not know the id
+     * @throws ServiceUnavailableException if user-service is unavailable and nothing is cached
+     */
+    public UserDTO getUser(Long userId) {
+        return userId != null ? users.get(userId).orElse(null) : null;
+    }
+
+    /**
+     * Cached users for all ids - misses in both levels are fetched with one batch call.
+     * Unknown ids are absent from the result.
+     */
+    public Map<Long, UserDTO> getUsers(Collection<Long> userIds) {
+        Map<Long, UserDTO> result = new HashMap<>();
+        users.getAll(userIds).forEach((id, user) -> user.ifPresent(dto -> result.put(id, dto)));
+        return result;
+    }
+
+    /**
+     * @return the listing, or null if housing-service does not know the id
+     * @throws ServiceUnavailableException if housing-service is unavailable and nothing is cached
+     */
+    public HousingListingDTO getListing(Long listingId) {
+        return listingId != null ? listings.get(listingId).orElse(null) : null;
+    }
+
+    public void evictUser(Long userId) {
+        users.invalidate(userId);
+        deleteL2(USER_KEY_PREFIX + userId);
+    }
+
+    public void evictListing(Long listingId) {
+        listings.invalidate(listingId);
+        deleteL2(LISTING_KEY_PREFIX + listingId);
+    }
+
+    private Map<Long, Optional<UserDTO>> loadUsers(Collection<? extends Long> ids) {
+        Map<Long, Optional<UserDTO>> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Optional<UserDTO> cached = readL2(USER_KEY_PREFIX + id, UserDTO.class);
+            if (cached != null) {
+                result.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            result.putAll(fetchUsers(missing));
+        }
+        return result;
+    }
+
+    private Map<Long, Optional<UserDTO>> fetchUsers(List<Long> ids) {
+        Map<Long, Optional<UserDTO>> result = new HashMap<>();
+        List<Long> unique = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (int from = 0; from < unique.size(); from += USER_BATCH_SIZE) {
+            List<Long> chunk = unique.subList(from, Math.min(from + USER_BATCH_SIZE, unique.size()));
+            List<UserDTO> fetched = remoteCallGuard.call(USER_SERVICE, () -> userServiceClient.getUsersByIds(chunk));
+            if (fetched != null) {
+                fetched.forEach(user -> result.put(user.getId(), Optional.of(user)));
+            }
+            for (Long id : chunk) {
+                Optional<UserDTO> user = result.computeIfAbsent(id, missing -> Optional.empty());
+                writeL2(USER_KEY_PREFIX + id, user);
+            }
+        }
+        return result;
+    }
+
+    private Optional<HousingListingDTO> fetchListing(Long id) {
+        Optional<HousingListingDTO> listing;
+        try {
+            listing = Optional.ofNullable(remoteCallGuard.call(HOUSING_SERVICE,
+                    () -> housingServiceClient.getHousingListingById(id)));
+        } catch (FeignException.NotFound e) {
+            listing = Optional.empty();
+        }
+        writeL2(LISTING_KEY_PREFIX + id, listing);
+        return listing;
+    }
+
+    /**
+     * @return the cached value (empty for a cached 404), or null on a miss / Redis error
+     */
+    private <T> Optional<T> readL2(String key, Class<T> type) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(key);
+            if (json == null) {
+                return null;
+            }
+            return NOT_FOUND.equals(json) ? Optional.empty() : Optional.of(objectMapper.readValue(json, type));
+        } catch (Exception e) {
+            log.warn("Remote profile L2 read failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeL2(String key, Optional<?> value) {
+        try {
+            if (value.isPresent()) {
+                stringRedisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(value.get()),
+                        Duration.ofMinutes(expireAfterWriteMinutes));
+            } else {
+                stringRedisTemplate.opsForValue().set(key, NOT_FOUND, Duration.ofSeconds(negativeTtlSeconds));
+            }
+        } catch (Exception e) {
+            log.warn("Remote profile L2 write failed for {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void deleteL2(String key) {
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("Remote profile L2 delete failed for {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void onChange(byte[] body, Consumer<Long> evict) {
+        for (String id : new String(body, StandardCharsets.UTF_8).split(",")) {
+            try {
+                evict.accept(Long.parseLong(id.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed change event id: {}", id);
+            }
+        }
+    }
+
+    /**
+     * Normal TTL for found entries, short TTL for cached 404s
+     */
+    private <T> Expiry<Long, Optional<T>> expiry() {
+        long positiveNanos = Duration.ofMinutes(expireAfterWriteMinutes).toNanos();
+        long negativeNanos = Duration.ofSeconds(negativeTtlSeconds).toNanos();
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(Long key, Optional<T> value, long currentTime) {
+                return value.isPresent() ? positiveNanos : negativeNanos;
+            }
+
+            @Override
+            public long expireAfterUpdate(Long key, Optional<T> value, long currentTime, long currentDuration) {
+                return value.isPresent() ? positiveNanos : negativeNanos;
+            }
+
+            @Override
+            public long expireAfterRead(Long key, Optional<T> value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package com.campusnest.messagingservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server-side debouncing of typing indicators
+ *
+ * Problem:
+ * Clients send /app/chat/typing several times a second while the user types, and each
+ * frame was written to Redis and forwarded to the other participant.
+ *
+ * Per session and conversation (kept in the STOMP session attributes, so it disappears
+ * with the session):
+ * - State transitions (started / stopped typing) are forwarded and stored immediately
+ * - Repeated "still typing" frames are forwarded at most once per forward-interval-ms,
+ *   so the recipient's indicator stays alive without a frame per keystroke
+ * - Redis (typing:conversation:*, 10s TTL) is written on transitions and refreshed at most
+ *   once per redis-refresh-ms while typing continues
+ */
+@Component
+public class TypingIndicatorCoalescer {
+
+    private static final String STATE_ATTRIBUTE = "typingState";
+
+    private final Counter coalescedFrames;
+
+    @Value("${messaging.typing.forward-interval-ms:2000}")
+    private long forwardIntervalMs;
+
+    @Value("${messaging.typing.redis-refresh-ms:5000}")
+    private long redisRefreshMs;
+
+    public record Decision(boolean forward, boolean store) {
+    }
+
+    private record TypingState(boolean typing, long forwardedAt, long storedAt) {
+    }
+
+    public TypingIndicatorCoalescer(MeterRegistry meterRegistry) {
+        this.coalescedFrames = Counter.builder("messaging.typing.coalesced")
+                .description("Typing frames absorbed by the debounce instead of being forwarded")
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Decision onTyping(Map<String, Object> sessionAttributes, Long conversationId, boolean typing) {
+        if (sessionAttributes == null) {
+            return new Decision(true, true);
+        }
+        Map<Long, TypingState> states = (Map<Long, TypingState>) sessionAttributes
+                .computeIfAbsent(STATE_ATTRIBUTE, key -> new ConcurrentHashMap<Long, TypingState>());
+
+        long now = System.currentTimeMillis();
+        Decision[] decision = new Decision[1];
+        states.compute(conversationId, (id, previous) -> {
+            if (previous == null || previous.typing() != typing) {
+                decision[0] = new Decision(true, true);
+                return new TypingState(typing, now, now);
+            }
+            if (typing && now - previous.forwardedAt() >= forwardIntervalMs) {
+                boolean store = now - previous.storedAt() >= redisRefreshMs;
+                decision[0] = new Decision(true, store);
+                return new TypingState(true, now, store ? now : previous.storedAt());
+            }
+            decision[0] = new Decision(false, false);
+            return previous;
+        });
+
+        if (!decision[0].forward()) {
+            coalescedFrames.increment();
+        }
+        return decision[0];
+    }
+}
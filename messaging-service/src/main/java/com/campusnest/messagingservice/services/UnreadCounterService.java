@@ -0,0 +1,251 @@
+package com.campusnest.messagingservice.services;
+
+import com.campusnest.messagingservice.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * O(1) unread counters in Redis
+ *
+ * Structure (one hash per user):
+ *   unread:{userId}  →  { "<conversationId>": n, ..., "total": sum }
+ *
+ * - Badge / per-conversation reads: a single HGET
+ * - New message: Lua HINCRBY on the conversation field + total (atomic, after commit)
+ * - Mark as read: Lua sets the conversation field and adjusts total by the difference
+ *
+ * Seeding:
+ * Increments only apply to an existing hash - a missing hash means "unknown", never 0.
+ * The first read seeds the whole hash from MySQL (one grouped COUNT over the read cursors).
+ *
+ * Reconciliation:
+ * Every user whose counters changed is added to unread:touched. A scheduled job pops a
+ * batch of them and rewrites their hash from MySQL, bounding any drift from races between
+ * seeding and concurrent increments.
+ */
+@Service
+@Slf4j
+public class UnreadCounterService {
+
+    private static final String KEY_PREFIX = "unread:";
+    private static final String TOUCHED_KEY = "unread:touched";
+    private static final String TOTAL_FIELD = "total";
+
+    // KEYS[1]=hash  ARGV[1]=conversationId  ARGV[2]=delta
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+            "  redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) " +
+            "  return redis.call('HINCRBY', KEYS[1], 'total', ARGV[2]) " +
+            "end " +
+            "return -1", Long.class);
+
+    // KEYS[1]=hash  ARGV[1]=conversationId  ARGV[2]=new count
+    private static final DefaultRedisScript<Long> SET_CONVERSATION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+            "local old = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0') " +
+            "local new = tonumber(ARGV[2]) " +
+            "if new == 0 then redis.call('HDEL', KEYS[1], ARGV[1]) " +
+            "else redis.call('HSET', KEYS[1], ARGV[1], new) end " +
+            "local total = redis.call('HINCRBY', KEYS[1], 'total', new - old) " +
+            "if total < 0 then redis.call('HSET', KEYS[1], 'total', 0) total = 0 end " +
+            "return total", Long.class);
+
+    // KEYS[1]=hash  ARGV[1]=ttl seconds  ARGV[2]=seed|replace  ARGV[3..]=field/value pairs
+    private static final DefaultRedisScript<Long> REPLACE_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[2] == 'seed' and redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "for i = 3, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Value("${messaging.unread-counters.ttl-seconds:604800}")
+    private long ttlSeconds;
+
+    @Value("${messaging.unread-counters.reconcile-batch-size:500}")
+    private int reconcileBatchSize;
+
+    public long getTotalUnread(Long userId) {
+        String value = hget(userId, TOTAL_FIELD);
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    public long getConversationUnread(Long userId, Long conversationId) {
+        String value = hget(userId, conversationId.toString());
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    /**
+     * Unread counts for a page of conversations - one HMGET
+     */
+    public Map<Long, Long> getConversationUnread(Long userId, Collection<Long> conversationIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        if (conversationIds.isEmpty()) {
+            return counts;
+        }
+        List<Object> fields = new ArrayList<>();
+        conversationIds.forEach(id -> fields.add(id.toString()));
+
+        try {
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(key(userId)))) {
+                load(userId, "seed");
+            }
+            List<Object> values = stringRedisTemplate.opsForHash().multiGet(key(userId), fields);
+            int i = 0;
+            for (Long id : conversationIds) {
+                Object value = values.get(i++);
+                counts.put(id, value != null ? Long.parseLong(value.toString()) : 0L);
+            }
+        } catch (Exception e) {
+            log.warn("Unread counter read failed for user {}: {}", userId, e.getMessage());
+            Set<Long> wanted = new HashSet<>(conversationIds);
+            for (Object[] row : messageRepository.countUnreadMessagesByConversationForUser(userId)) {
+                Long id = ((Number) row[0]).longValue();
+                if (wanted.contains(id)) {
+                    counts.put(id, ((Number) row[1]).longValue());
+                }
+            }
+            conversationIds.forEach(id -> counts.putIfAbsent(id, 0L));
+        }
+        return counts;
+    }
+
+    /**
+     * New message for the recipient - applied after the surrounding transaction commits
+     */
+    public void onMessageDelivered(Long recipientId, Long conversationId, long count) {
+        afterCommit(() -> {
+            try {
+                stringRedisTemplate.execute(INCREMENT_SCRIPT, List.of(key(recipientId)),
+                        conversationId.toString(), Long.toString(count));
+                touch(recipientId);
+            } catch (Exception e) {
+                log.warn("Failed to increment unread counter for user {}: {}", recipientId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Conversation read up to some cursor - remaining unread count for it (0 when fully read)
+     */
+    public void onConversationRead(Long userId, Long conversationId, long remainingUnread) {
+        afterCommit(() -> {
+            try {
+                stringRedisTemplate.execute(SET_CONVERSATION_SCRIPT, List.of(key(userId)),
+                        conversationId.toString(), Long.toString(remainingUnread));
+                touch(userId);
+            } catch (Exception e) {
+                log.warn("Failed to reset unread counter for user {}: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${messaging.unread-counters.reconcile-interval-ms:60000}")
+    public void reconcileTouchedUsers() {
+        List<String> userIds;
+        try {
+            userIds = stringRedisTemplate.opsForSet().pop(TOUCHED_KEY, reconcileBatchSize);
+        } catch (Exception e) {
+            log.warn("Unread counter reconciliation skipped: {}", e.getMessage());
+            return;
+        }
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+
+        for (String userId : userIds) {
+            try {
+                load(Long.parseLong(userId), "replace");
+            } catch (Exception e) {
+                log.warn("Failed to reconcile unread counters for user {}: {}", userId, e.getMessage());
+            }
+        }
+        log.debug("Reconciled unread counters for {} users", userIds.size());
+    }
+
+    private String hget(Long userId, String field) {
+        try {
+            Object value = stringRedisTemplate.opsForHash().get(key(userId), field);
+            if (value == null && !Boolean.TRUE.equals(stringRedisTemplate.hasKey(key(userId)))) {
+                load(userId, "seed");
+                value = stringRedisTemplate.opsForHash().get(key(userId), field);
+            }
+            return value != null ? value.toString() : null;
+        } catch (Exception e) {
+            // Redis unavailable - answer from MySQL
+            log.warn("Unread counter read failed for user {}: {}", userId, e.getMessage());
+            return fromDatabase(userId, field);
+        }
+    }
+
+    private void load(Long userId, String mode) {
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(ttlSeconds));
+        args.add(mode);
+
+        long total = 0;
+        for (Object[] row : messageRepository.countUnreadMessagesByConversationForUser(userId)) {
+            long count = ((Number) row[1]).longValue();
+            args.add(row[0].toString());
+            args.add(Long.toString(count));
+            total += count;
+        }
+        args.add(TOTAL_FIELD);
+        args.add(Long.toString(total));
+
+        stringRedisTemplate.execute(REPLACE_SCRIPT, List.of(key(userId)), args.toArray());
+    }
+
+    private String fromDatabase(Long userId, String field) {
+        long total = 0;
+        for (Object[] row : messageRepository.countUnreadMessagesByConversationForUser(userId)) {
+            long count = ((Number) row[1]).longValue();
+            if (row[0].toString().equals(field)) {
+                return Long.toString(count);
+            }
+            total += count;
+        }
+        return TOTAL_FIELD.equals(field) ? Long.toString(total) : null;
+    }
+
+    private void touch(Long userId) {
+        stringRedisTemplate.opsForSet().add(TOUCHED_KEY, userId.toString());
+    }
+
+    private String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
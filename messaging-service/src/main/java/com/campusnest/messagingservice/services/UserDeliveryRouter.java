@@ -0,0 +1,303 @@
+package com.campusnest.messagingservice.services;
+
+import com.campusnest.messagingservice.config.CborMessageConverter;
+import com.campusnest.messagingservice.dto.DeliveryEnvelope;
+import com.campusnest.messagingservice.enums.DeliveryEventType;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cluster-aware convertAndSendToUser
+ *
+ * Problem:
+ * With the in-memory simple broker a message for a user whose session lives on another
+ * messaging-service instance was silently dropped.
+ *
+ * Routing (per delivery):
+ * - Recipient has a session on this instance → SimpMessagingTemplate directly (no I/O)
+ * - Recipient has sessions on other instances (UserSessionRegistry) → the delivery is
+ *   queued per target instance and flushed in batches to that instance's Redis channel
+ *   campusnest:ws-deliver:{instanceId}, where it is handed to the local broker
+ * - Both can apply (several devices on different instances)
+ * - Single instance: the registry knows no other instance is live and skips the Redis lookup
+ *
+ * The payload is serialized once per delivery, however many instances receive it.
+ *
+ * Batching / backpressure:
+ * A batch is published when it reaches batch-size or on the next flush tick (a few ms),
+ * so a burst costs one PUBLISH per target instance instead of one per frame. Each target
+ * queue is bounded by max-pending; when it is full, deliveries are dropped and counted
+ * (real-time frames are best effort - the message itself is already persisted).
+ *
+ * With the STOMP broker relay enabled the external broker already routes user
+ * destinations across instances, so everything goes straight to the template.
+ *
+ * Multiplexed events:
+ * sendEvent / sendSerialized deliver typed DeliveryEnvelope frames to the single
+ * EVENTS_DESTINATION queue. Callers serialize a payload once (toJson), wrap it per event
+ * type (envelope) and reuse the same JSON for every recipient; it is handed to the broker
+ * as bytes, bypassing the message converters.
+ *
+ * Events for a user with a CBOR session on this instance are sent per session: CBOR
+ * sessions get the JSON transcoded once (CborMessageConverter), the others the JSON bytes.
+ * With the broker relay this negotiation is not applied (sessions on other instances are
+ * unknown here) and every session receives JSON.
+ */
+@Service
+@Slf4j
+public class UserDeliveryRouter {
+
+    public static final String EVENTS_DESTINATION = "/queue/events";
+
+    private static final String CHANNEL_PREFIX = "campusnest:ws-deliver:";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CborMessageConverter cborMessageConverter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messaging.broker.relay.enabled:false}")
+    private boolean relayEnabled;
+
+    @Value("${messaging.ws-routing.batch-size:100}")
+    private int batchSize;
+
+    @Value("${messaging.ws-routing.max-pending:10000}")
+    private int maxPending;
+
+    private final Map<String, BlockingQueue<RoutedDelivery>> outbound = new ConcurrentHashMap<>();
+
+    private final Map<String, ReentrantLock> flushLocks = new ConcurrentHashMap<>();
+
+    private Counter localDeliveries;
+
+    private Counter remoteDeliveries;
+
+    private Counter droppedDeliveries;
+
+    /**
+     * One delivery on the wire - payload is either JSON or plain text (String payloads)
+     */
+    public record RoutedDelivery(String user, String destination, boolean json, String payload) {
+    }
+
+    @PostConstruct
+    public void init() {
+        localDeliveries = Counter.builder("messaging.ws.deliveries").tag("route", "local")
+                .description("User deliveries handed to the local broker").register(meterRegistry);
+        remoteDeliveries = Counter.builder("messaging.ws.deliveries").tag("route", "remote")
+                .description("User deliveries forwarded to another instance").register(meterRegistry);
+        droppedDeliveries = Counter.builder("messaging.ws.deliveries.dropped")
+                .description("Cross-instance deliveries dropped because the target queue was full")
+                .register(meterRegistry);
+
+        if (!relayEnabled) {
+            listenerContainer.addMessageListener((message, pattern) -> onBatch(message.getBody()),
+                    new ChannelTopic(CHANNEL_PREFIX + sessionRegistry.getInstanceId()));
+        }
+    }
+
+    public void sendToUser(Long userId, String destination, Object payload) {
+        if (relayEnabled) {
+            messagingTemplate.convertAndSendToUser(userId.toString(), destination, payload);
+            return;
+        }
+
+        if (sessionRegistry.hasLocalSession(userId)) {
+            messagingTemplate.convertAndSendToUser(userId.toString(), destination, payload);
+            localDeliveries.increment();
+        }
+
+        Set<String> instances = sessionRegistry.remoteInstances(userId);
+        if (instances.isEmpty()) {
+            return;
+        }
+        RoutedDelivery delivery;
+        try {
+            delivery = payload instanceof String text
+                    ? new RoutedDelivery(userId.toString(), destination, false, text)
+                    : new RoutedDelivery(userId.toString(), destination, true, objectMapper.writeValueAsString(payload));
+        } catch (Exception e) {
+            log.error("Failed to serialize delivery for user {} to {}: {}", userId, destination, e.getMessage());
+            return;
+        }
+        forward(instances, delivery);
+    }
+
+    /**
+     * Typed frame on the user's events queue - payloadJson comes from toJson
+     */
+    public void sendEvent(Long userId, DeliveryEventType type, Long conversationId, String payloadJson) {
+        sendSerialized(userId, EVENTS_DESTINATION, envelope(type, conversationId, payloadJson));
+    }
+
+    /**
+     * Delivers JSON that is already serialized (e.g. one envelope shared by many recipients)
+     */
+    public void sendSerialized(Long userId, String destination, String json) {
+        if (relayEnabled || sessionRegistry.hasLocalSession(userId)) {
+            sendLocal(userId.toString(), destination, true, json);
+            localDeliveries.increment();
+        }
+        if (relayEnabled) {
+            return;
+        }
+        Set<String> instances = sessionRegistry.remoteInstances(userId);
+        if (!instances.isEmpty()) {
+            forward(instances, new RoutedDelivery(userId.toString(), destination, true, json));
+        }
+    }
+
+    public String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize " + payload.getClass().getSimpleName(), e);
+        }
+    }
+
+    public String envelope(DeliveryEventType type, Long conversationId, String payloadJson) {
+        return toJson(new DeliveryEnvelope(type, conversationId, payloadJson));
+    }
+
+    private void forward(Set<String> instances, RoutedDelivery delivery) {
+        for (String instance : instances) {
+            BlockingQueue<RoutedDelivery> queue = outbound.computeIfAbsent(instance,
+                    id -> new ArrayBlockingQueue<>(maxPending));
+            if (!queue.offer(delivery)) {
+                droppedDeliveries.increment();
+                continue;
+            }
+            remoteDeliveries.increment();
+            if (queue.size() >= batchSize) {
+                flush(instance, queue);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${messaging.ws-routing.flush-interval-ms:25}")
+    public void flushAll() {
+        outbound.forEach(this::flush);
+    }
+
+    private void flush(String instance, BlockingQueue<RoutedDelivery> queue) {
+        if (queue.isEmpty()) {
+            return;
+        }
+        // One flusher per target keeps deliveries to a user in order; whoever holds the
+        // lock drains everything, so the others can skip
+        ReentrantLock lock = flushLocks.computeIfAbsent(instance, id -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            List<RoutedDelivery> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                try {
+                    stringRedisTemplate.convertAndSend(CHANNEL_PREFIX + instance, objectMapper.writeValueAsString(batch));
+                } catch (Exception e) {
+                    droppedDeliveries.increment(batch.size());
+                    log.warn("Failed to forward {} deliveries to instance {}: {}", batch.size(), instance, e.getMessage());
+                }
+                batch.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onBatch(byte[] body) {
+        List<RoutedDelivery> batch;
+        try {
+            batch = objectMapper.readValue(body, new TypeReference<>() {
+            });
+        } catch (Exception e) {
+            log.warn("Ignoring malformed delivery batch: {}", e.getMessage());
+            return;
+        }
+        for (RoutedDelivery delivery : batch) {
+            // Already serialized by the sending instance
+            sendLocal(delivery.user(), delivery.destination(), delivery.json(), delivery.payload());
+        }
+    }
+
+    /**
+     * Hands serialized content to the broker as bytes, bypassing the message converters
+     */
+    private void sendLocal(String user, String destination, boolean json, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        MimeType contentType = json ? MimeTypeUtils.APPLICATION_JSON : MimeTypeUtils.TEXT_PLAIN;
+
+        if (!relayEnabled && json && EVENTS_DESTINATION.equals(destination)) {
+            Long userId = Long.valueOf(user);
+            if (sessionRegistry.hasCborSession(userId)) {
+                byte[] cbor = cborMessageConverter.transcodeJson(content);
+                for (String sessionId : sessionRegistry.getLocalSessions(userId)) {
+                    boolean cborSession = sessionRegistry.isCborSession(sessionId);
+                    sendBytes(user, destination, sessionId,
+                            cborSession ? CborMessageConverter.APPLICATION_CBOR : contentType,
+                            cborSession ? cbor : bytes);
+                }
+                return;
+            }
+        }
+        sendBytes(user, destination, null, contentType, bytes);
+    }
+
+    /**
+     * @param sessionId only that session of the user, or null for all of them
+     */
+    private void sendBytes(String user, String destination, String sessionId, MimeType contentType, byte[] bytes) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(contentType);
+        if (sessionId != null) {
+            accessor.setSessionId(sessionId);
+        }
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + user + destination,
+                MessageBuilder.createMessage(bytes, accessor.getMessageHeaders()));
+    }
+}
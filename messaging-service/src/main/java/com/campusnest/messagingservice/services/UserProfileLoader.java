@@ -0,0 +1,86 @@
+package com.campusnest.messagingservice.services;
+
+import com.campusnest.messagingservice.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Request-scoped user profile loader (DataLoader-style)
+ *
+ * Problem:
+ * Converting a 50-message page called user-service once per message, i.e. 50 HTTP calls
+ * for what is usually the same two senders.
+ *
+ * Usage:
+ * 1. load(ids) with every user id the response will need → one RemoteProfileCache lookup
+ *    (one batch call to user-service for ids missing from both cache levels)
+ * 2. get(id) while building DTOs → served from the request-local map
+ *
+ * Ids that user-service does not know are remembered as misses, so they are not requested
+ * again within the same request. Only usable from HTTP request threads (not STOMP handlers).
+ */
+@Component
+@RequestScope
+@Slf4j
+public class UserProfileLoader {
+
+    private static final int MAX_BATCH_SIZE = 200;
+
+    @Autowired
+    private RemoteProfileCache remoteProfileCache;
+
+    private final Map<Long, UserDTO> loaded = new HashMap<>();
+
+    private final Set<Long> requested = new HashSet<>();
+
+    public Map<Long, UserDTO> load(Collection<Long> userIds) {
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long userId : userIds) {
+            if (userId != null && !requested.contains(userId)) {
+                missing.add(userId);
+            }
+        }
+
+        List<Long> batch = new ArrayList<>(missing);
+        for (int from = 0; from < batch.size(); from += MAX_BATCH_SIZE) {
+            List<Long> chunk = batch.subList(from, Math.min(from + MAX_BATCH_SIZE, batch.size()));
+            try {
+                loaded.putAll(remoteProfileCache.getUsers(chunk));
+                requested.addAll(chunk);
+            } catch (Exception e) {
+                // Leave the chunk unrequested so a later load() in this request can retry
+                log.warn("Failed to fetch user details for {} users: {}", chunk.size(), e.getMessage());
+            }
+        }
+
+        Map<Long, UserDTO> result = new HashMap<>();
+        for (Long userId : userIds) {
+            UserDTO user = loaded.get(userId);
+            if (user != null) {
+                result.put(userId, user);
+            }
+        }
+        return result;
+    }
+
+    public UserDTO get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        if (!requested.contains(userId)) {
+            load(List.of(userId));
+        }
+        return loaded.get(userId);
+    }
+}
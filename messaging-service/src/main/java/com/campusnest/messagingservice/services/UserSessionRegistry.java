@@ -0,0 +1,257 @@
+package com.campusnest.messagingservice.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which messaging-service instance holds each user's STOMP sessions
+ *
+ * Problem:
+ * With more than one replica, convertAndSendToUser only reaches sessions on the local
+ * instance, and nothing recorded where the other sessions live.
+ *
+ * Structure:
+ * - Local: userId → STOMP session ids on this instance (answers "is the user here?"
+ *   without any I/O - the fast path for most deliveries)
+ * - Redis (one hash per user):
+ *     ws:sessions:{userId}  →  { "<instanceId>": lastHeartbeatEpochMs, ... }
+ * - Redis (all instances):
+ *     ws:instances  →  { "<instanceId>": lastHeartbeatEpochMs, ... }
+ *   Re-read at most every instances-refresh-ms; while no other instance is live,
+ *   remoteInstances answers without a per-user HGETALL (single-node deployments)
+ *
+ * Codec:
+ * Sessions that sent "accept-content: application/cbor" on CONNECT are remembered locally,
+ * so UserDeliveryRouter can encode their events as CBOR.
+ *
+ * Lifecycle:
+ * - WebSocketAuthenticationHandler registers the session on CONNECT and unregisters it on
+ *   DISCONNECT (also sent by Spring when the socket closes without a DISCONNECT frame)
+ * - Only the first / last session of a user on this instance touches Redis
+ * - A scheduled heartbeat re-stamps this instance and every local user in one pipeline. Entries of an
+ *   instance that died without cleaning up are ignored once older than stale-after-ms,
+ *   and the whole hash expires if nobody refreshes it.
+ */
+@Service
+@Slf4j
+public class UserSessionRegistry {
+
+    private static final String KEY_PREFIX = "ws:sessions:";
+
+    private static final String INSTANCES_KEY = "ws:instances";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // userId → local STOMP session ids
+    private final Map<Long, Set<String>> localSessions = new ConcurrentHashMap<>();
+
+    // sessionId → userId (DISCONNECT frames do not always carry the user)
+    private final Map<String, Long> sessionOwners = new ConcurrentHashMap<>();
+
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+
+    @Value("${messaging.ws-routing.stale-after-ms:30000}")
+    private long staleAfterMs;
+
+    @Value("${messaging.ws-routing.instances-refresh-ms:1000}")
+    private long instancesRefreshMs;
+
+    // Cached view of ws:instances - whether any other instance is live, and when it was read
+    private volatile boolean peersLive = true;
+
+    private volatile long peersCheckedAt;
+
+    public UserSessionRegistry(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("messaging.ws.local.users", localSessions, Map::size)
+                .description("Users with at least one STOMP session on this instance")
+                .register(meterRegistry);
+        stamp(List.of());
+        log.info("WebSocket session registry started as instance {}", instanceId);
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public void register(Long userId, String sessionId, boolean cbor) {
+        if (userId == null || sessionId == null) {
+            return;
+        }
+        sessionOwners.put(sessionId, userId);
+        if (cbor) {
+            cborSessions.add(sessionId);
+        }
+        boolean[] first = new boolean[1];
+        localSessions.compute(userId, (id, sessions) -> {
+            Set<String> result = sessions != null ? sessions : ConcurrentHashMap.newKeySet();
+            first[0] = result.isEmpty();
+            result.add(sessionId);
+            return result;
+        });
+        if (first[0]) {
+            stamp(List.of(userId));
+        }
+    }
+
+    public void unregister(String sessionId) {
+        Long userId = sessionId != null ? sessionOwners.remove(sessionId) : null;
+        if (userId == null) {
+            return;
+        }
+        cborSessions.remove(sessionId);
+        boolean[] last = new boolean[1];
+        localSessions.computeIfPresent(userId, (id, sessions) -> {
+            sessions.remove(sessionId);
+            last[0] = sessions.isEmpty();
+            return last[0] ? null : sessions;
+        });
+        if (last[0]) {
+            try {
+                stringRedisTemplate.opsForHash().delete(KEY_PREFIX + userId, instanceId);
+            } catch (Exception e) {
+                log.warn("Failed to remove session entry for user {}: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    public boolean hasLocalSession(Long userId) {
+        return localSessions.containsKey(userId);
+    }
+
+    public Set<String> getLocalSessions(Long userId) {
+        return localSessions.getOrDefault(userId, Set.of());
+    }
+
+    public boolean hasCborSession(Long userId) {
+        return getLocalSessions(userId).stream().anyMatch(cborSessions::contains);
+    }
+
+    public boolean isCborSession(String sessionId) {
+        return cborSessions.contains(sessionId);
+    }
+
+    /**
+     * Other live instances holding sessions of the user (empty if Redis is unavailable)
+     */
+    public Set<String> remoteInstances(Long userId) {
+        if (!peersLive()) {
+            return Set.of();
+        }
+        Set<String> instances = new HashSet<>();
+        try {
+            long liveSince = System.currentTimeMillis() - staleAfterMs;
+            stringRedisTemplate.<String, String>opsForHash().entries(KEY_PREFIX + userId).forEach((instance, stamp) -> {
+                if (!instanceId.equals(instance) && Long.parseLong(stamp) >= liveSince) {
+                    instances.add(instance);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Session registry lookup failed for user {}: {}", userId, e.getMessage());
+        }
+        return instances;
+    }
+
+    @Scheduled(fixedDelayString = "${messaging.ws-routing.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        stamp(localSessions.keySet());
+    }
+
+    /**
+     * Whether another instance heartbeated recently (assumed true if Redis is unavailable)
+     */
+    private boolean peersLive() {
+        long now = System.currentTimeMillis();
+        if (now - peersCheckedAt < instancesRefreshMs) {
+            return peersLive;
+        }
+        peersCheckedAt = now;
+        try {
+            long liveSince = now - staleAfterMs;
+            boolean live = false;
+            List<Object> dead = new ArrayList<>();
+            for (Map.Entry<String, String> entry :
+                    stringRedisTemplate.<String, String>opsForHash().entries(INSTANCES_KEY).entrySet()) {
+                if (Long.parseLong(entry.getValue()) < liveSince) {
+                    dead.add(entry.getKey());
+                } else if (!instanceId.equals(entry.getKey())) {
+                    live = true;
+                }
+            }
+            if (!dead.isEmpty()) {
+                stringRedisTemplate.opsForHash().delete(INSTANCES_KEY, dead.toArray());
+            }
+            peersLive = live;
+        } catch (Exception e) {
+            log.warn("Instance registry lookup failed: {}", e.getMessage());
+            peersLive = true;
+        }
+        return peersLive;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            byte[] field = instanceId.getBytes(StandardCharsets.UTF_8);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hashCommands().hDel(INSTANCES_KEY.getBytes(StandardCharsets.UTF_8), field);
+                for (Long userId : localSessions.keySet()) {
+                    connection.hashCommands().hDel(key(userId), field);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to clear session entries on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private void stamp(Iterable<Long> userIds) {
+        try {
+            byte[] field = instanceId.getBytes(StandardCharsets.UTF_8);
+            byte[] now = Long.toString(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8);
+            long ttlSeconds = Duration.ofMillis(staleAfterMs * 2).toSeconds();
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hashCommands().hSet(INSTANCES_KEY.getBytes(StandardCharsets.UTF_8), field, now);
+                for (Long userId : userIds) {
+                    byte[] key = key(userId);
+                    connection.hashCommands().hSet(key, field, now);
+                    connection.keyCommands().expire(key, ttlSeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Session registry heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] key(Long userId) {
+        return (KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,75 @@
+package com.campusnest.messagingservice.config;
+
+import com.campusnest.messagingservice.dto.ChatMessageRequest;
+import com.campusnest.messagingservice.dto.DeliveryEnvelope;
+import com.campusnest.messagingservice.enums.DeliveryEventType;
+import com.campusnest.messagingservice.enums.MessageType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CborMessageConverterTest {
+
+    private final CborMessageConverter converter = new CborMessageConverter();
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    @Test
+    void transcodesJsonToTheSameDocumentInFewerBytes() throws Exception {
+        String payload = "{\"id\":123456,\"conversationId\":42,\"senderId\":7,"
+                + "\"content\":\"Is the room still available in May?\","
+                + "\"sentAt\":\"2025-04-01T10:15:30\",\"messageType\":\"TEXT\",\"isRead\":false}";
+        String json = jsonMapper.writeValueAsString(new DeliveryEnvelope(DeliveryEventType.MESSAGE, 42L, payload));
+
+        byte[] cbor = converter.transcodeJson(json);
+
+        JsonNode decoded = cborMapper.readTree(cbor);
+        assertThat(decoded).isEqualTo(jsonMapper.readTree(json));
+        assertThat(decoded.get("payload").get("content").asText()).isEqualTo("Is the room still available in May?");
+        assertThat(cbor.length).isLessThan(json.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void rejectsMalformedJson() {
+        assertThatThrownBy(() -> converter.transcodeJson("{\"type\":"))
+                .isInstanceOf(MessageConversionException.class);
+    }
+
+    @Test
+    void decodesInboundCborFrames() throws Exception {
+        byte[] body = cborMapper.writeValueAsBytes(
+                new ChatMessageRequest(42L, "hello", MessageType.TEXT, "client-1"));
+        Message<byte[]> message = MessageBuilder.withPayload(body)
+                .setHeader(MessageHeaders.CONTENT_TYPE, CborMessageConverter.APPLICATION_CBOR)
+                .build();
+
+        Object request = converter.fromMessage(message, ChatMessageRequest.class);
+
+        assertThat(request).isEqualTo(new ChatMessageRequest(42L, "hello", MessageType.TEXT, "client-1"));
+    }
+
+    @Test
+    void leavesJsonFramesToTheJsonConverter() throws Exception {
+        byte[] body = jsonMapper.writeValueAsBytes(new ChatMessageRequest(42L, "hello", MessageType.TEXT, null));
+        Message<byte[]> json = MessageBuilder.withPayload(body)
+                .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON)
+                .build();
+        Message<byte[]> untyped = MessageBuilder.withPayload(body).build();
+
+        assertThat(converter.fromMessage(json, ChatMessageRequest.class)).isNull();
+        assertThat(converter.fromMessage(untyped, ChatMessageRequest.class)).isNull();
+    }
+}
@@ -0,0 +1,112 @@
+package com.campusnest.messagingservice.repository;
+
+import com.campusnest.messagingservice.models.ConversationReadState;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the native GREATEST upserts against H2 in MySQL mode (ON DUPLICATE KEY UPDATE, VALUES())
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:read-state;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ConversationReadStateRepositoryTest {
+
+    private static final long USER = 7L;
+
+    private static final long OTHER_USER = 8L;
+
+    @Autowired
+    private ConversationReadStateRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void readCursorInsertsThenOnlyMovesForward() {
+        repository.advanceReadCursor(1L, USER, 10L);
+        assertCursor(1L, USER, 10L, 10L);
+
+        repository.advanceReadCursor(1L, USER, 25L);
+        assertCursor(1L, USER, 25L, 25L);
+
+        // A late, older read (e.g. a reordered request) must not move the cursor back
+        repository.advanceReadCursor(1L, USER, 12L);
+        assertCursor(1L, USER, 25L, 25L);
+
+        assertThat(repository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void deliveredCursorNeverOvertakesOrResetsTheReadCursor() {
+        repository.advanceDeliveredCursor(1L, USER, 30L);
+        assertCursor(1L, USER, 0L, 30L);
+
+        repository.advanceReadCursor(1L, USER, 20L);
+        assertCursor(1L, USER, 20L, 30L);
+
+        repository.advanceDeliveredCursor(1L, USER, 15L);
+        assertCursor(1L, USER, 20L, 30L);
+
+        repository.advanceDeliveredCursor(1L, USER, 40L);
+        assertCursor(1L, USER, 20L, 40L);
+    }
+
+    @Test
+    void markConversationReadUsesTheCommittedHighWaterMarkForParticipantsOnly() {
+        insertConversation(1L, USER, OTHER_USER, 50L);
+        insertConversation(2L, USER, OTHER_USER, null);
+
+        assertThat(repository.markConversationRead(1L, USER)).isPositive();
+        assertCursor(1L, USER, 50L, 50L);
+
+        // Not a participant / no messages yet - nothing is written
+        assertThat(repository.markConversationRead(1L, 99L)).isZero();
+        assertThat(repository.markConversationRead(2L, USER)).isZero();
+        assertThat(repository.findByConversationIdAndUserId(1L, 99L)).isEmpty();
+        assertThat(repository.findByConversationIdAndUserId(2L, USER)).isEmpty();
+
+        // An explicit read beyond the high-water mark is kept
+        repository.advanceReadCursor(1L, USER, 60L);
+        repository.markConversationRead(1L, USER);
+        assertCursor(1L, USER, 60L, 60L);
+    }
+
+    private void insertConversation(long id, long participant1, long participant2, Long lastMessageId) {
+        jdbcTemplate.update("INSERT INTO conversations (id, participant1_id, participant2_id, housing_listing_id, "
+                        + "is_active, created_at, last_message_id) VALUES (?, ?, ?, 1, TRUE, NOW(), ?)",
+                id, participant1, participant2, lastMessageId);
+    }
+
+    private void assertCursor(long conversationId, long userId, long lastRead, long lastDelivered) {
+        // The upserts bypass the persistence context - read the row, not a cached entity
+        entityManager.clear();
+        ConversationReadState state = repository.findByConversationIdAndUserId(conversationId, userId).orElseThrow();
+        assertThat(state.getLastReadMessageId()).isEqualTo(lastRead);
+        assertThat(state.getLastDeliveredMessageId()).isEqualTo(lastDelivered);
+    }
+
+    @Configuration
+    @EntityScan(basePackageClasses = ConversationReadState.class)
+    @EnableJpaRepositories(basePackageClasses = ConversationReadStateRepository.class)
+    static class JpaConfig {
+    }
+}
@@ -0,0 +1,215 @@
+package com.campusnest.messagingservice.services;
+
+import com.campusnest.messagingservice.config.CborMessageConverter;
+import com.campusnest.messagingservice.enums.DeliveryEventType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two routers wired through a fake Redis channel: deliveries for a user connected to
+ * instance B are batched by A, published once and handed to B's local broker
+ */
+class UserDeliveryRouterTest {
+
+    private static final long JSON_USER = 1L;
+
+    private static final long CBOR_USER = 2L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+
+    private Instance a;
+
+    private Instance b;
+
+    @BeforeEach
+    void setUp() {
+        a = new Instance("a", false);
+        b = new Instance("b", false);
+
+        when(a.registry.remoteInstances(JSON_USER)).thenReturn(Set.of("b"));
+        when(a.registry.remoteInstances(CBOR_USER)).thenReturn(Set.of("b"));
+
+        when(b.registry.hasLocalSession(JSON_USER)).thenReturn(true);
+        when(b.registry.hasLocalSession(CBOR_USER)).thenReturn(true);
+        when(b.registry.hasCborSession(CBOR_USER)).thenReturn(true);
+        when(b.registry.getLocalSessions(CBOR_USER)).thenReturn(Set.of("cbor-session", "json-session"));
+        when(b.registry.isCborSession("cbor-session")).thenReturn(true);
+    }
+
+    @Test
+    void batchesRemoteDeliveriesIntoOnePublishAndDeliversThemInOrder() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            a.router.sendSerialized(JSON_USER, "/queue/messages", "{\"seq\":" + i + "}");
+        }
+        a.router.sendToUser(JSON_USER, "/queue/presence", "offline");
+        verify(redis, never()).convertAndSend(anyString(), anyString());
+
+        List<String> published = flush(a, "b");
+        assertThat(published).hasSize(1);
+        b.receive(published.get(0));
+
+        List<Sent> sent = b.sent(4);
+        for (int i = 0; i < 3; i++) {
+            assertThat(sent.get(i).destination()).isEqualTo("/user/1/queue/messages");
+            assertThat(contentType(sent.get(i).message())).isEqualTo(MimeTypeUtils.APPLICATION_JSON);
+            assertThat(body(sent.get(i).message())).isEqualTo("{\"seq\":" + i + "}");
+        }
+        assertThat(sent.get(3).destination()).isEqualTo("/user/1/queue/presence");
+        assertThat(contentType(sent.get(3).message())).isEqualTo(MimeTypeUtils.TEXT_PLAIN);
+        assertThat(body(sent.get(3).message())).isEqualTo("offline");
+    }
+
+    @Test
+    void fullBatchIsPublishedWithoutWaitingForTheFlushTick() {
+        ReflectionTestUtils.setField(a.router, "batchSize", 2);
+
+        a.router.sendSerialized(JSON_USER, "/queue/messages", "{\"seq\":0}");
+        verify(redis, never()).convertAndSend(anyString(), anyString());
+        a.router.sendSerialized(JSON_USER, "/queue/messages", "{\"seq\":1}");
+
+        verify(redis, times(1)).convertAndSend(eq("campusnest:ws-deliver:b"), anyString());
+    }
+
+    @Test
+    void eventsAreTranscodedPerSessionOnTheReceivingInstance() throws Exception {
+        String payload = a.router.toJson(Map.of("content", "hi"));
+        a.router.sendEvent(CBOR_USER, DeliveryEventType.MESSAGE, 42L, payload);
+
+        b.receive(flush(a, "b").get(0));
+
+        List<Sent> sent = b.sent(2);
+        assertThat(sent).extracting(Sent::destination).containsOnly("/user/2" + UserDeliveryRouter.EVENTS_DESTINATION);
+        Message<?> cbor = session(sent, "cbor-session");
+        Message<?> json = session(sent, "json-session");
+
+        assertThat(contentType(cbor)).isEqualTo(CborMessageConverter.APPLICATION_CBOR);
+        assertThat(contentType(json)).isEqualTo(MimeTypeUtils.APPLICATION_JSON);
+
+        JsonNode expected = objectMapper.readTree(body(json));
+        assertThat(new CBORMapper().readTree((byte[]) cbor.getPayload())).isEqualTo(expected);
+        assertThat(expected.get("type").asText()).isEqualTo("MESSAGE");
+        assertThat(expected.get("payload").get("content").asText()).isEqualTo("hi");
+    }
+
+    @Test
+    void brokerRelayBypassesRedisRouting() {
+        Instance relay = new Instance("relay", true);
+
+        relay.router.sendSerialized(JSON_USER, "/queue/messages", "{\"seq\":0}");
+        relay.router.flushAll();
+
+        assertThat(relay.sent(1)).hasSize(1);
+        verify(relay.registry, never()).remoteInstances(any());
+        verify(relay.listenerContainer, never()).addMessageListener(any(MessageListener.class), any(ChannelTopic.class));
+        verify(redis, never()).convertAndSend(anyString(), anyString());
+    }
+
+    private List<String> flush(Instance instance, String target) {
+        instance.router.flushAll();
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(redis, atLeastOnce()).convertAndSend(eq("campusnest:ws-deliver:" + target), published.capture());
+        return published.getAllValues();
+    }
+
+    private static Message<?> session(List<Sent> sent, String sessionId) {
+        return sent.stream()
+                .map(Sent::message)
+                .filter(message -> sessionId.equals(SimpMessageHeaderAccessor.wrap(message).getSessionId()))
+                .findFirst().orElseThrow();
+    }
+
+    private static MimeType contentType(Message<?> message) {
+        return SimpMessageHeaderAccessor.wrap(message).getContentType();
+    }
+
+    private static String body(Message<?> message) {
+        return new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+    }
+
+    private record Sent(String destination, Message<?> message) {
+    }
+
+    private class Instance {
+
+        final UserSessionRegistry registry = mock(UserSessionRegistry.class);
+
+        final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+
+        final RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+
+        final UserDeliveryRouter router = new UserDeliveryRouter();
+
+        private final String channel;
+
+        Instance(String instanceId, boolean relayEnabled) {
+            this.channel = "campusnest:ws-deliver:" + instanceId;
+            when(registry.getInstanceId()).thenReturn(instanceId);
+            when(template.getUserDestinationPrefix()).thenReturn("/user/");
+
+            ReflectionTestUtils.setField(router, "messagingTemplate", template);
+            ReflectionTestUtils.setField(router, "sessionRegistry", registry);
+            ReflectionTestUtils.setField(router, "stringRedisTemplate", redis);
+            ReflectionTestUtils.setField(router, "listenerContainer", listenerContainer);
+            ReflectionTestUtils.setField(router, "objectMapper", objectMapper);
+            ReflectionTestUtils.setField(router, "cborMessageConverter", new CborMessageConverter());
+            ReflectionTestUtils.setField(router, "meterRegistry", new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(router, "relayEnabled", relayEnabled);
+            ReflectionTestUtils.setField(router, "batchSize", 100);
+            ReflectionTestUtils.setField(router, "maxPending", 1000);
+            router.init();
+        }
+
+        void receive(String batch) {
+            ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+            verify(listenerContainer).addMessageListener(listener.capture(), eq(new ChannelTopic(channel)));
+            listener.getValue().onMessage(new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8),
+                    batch.getBytes(StandardCharsets.UTF_8)), null);
+        }
+
+        List<Sent> sent(int expected) {
+            ArgumentCaptor<String> destinations = ArgumentCaptor.forClass(String.class);
+            ArgumentCaptor<Message<?>> messages = ArgumentCaptor.captor();
+            verify(template, times(expected)).send(destinations.capture(), messages.capture());
+            List<Sent> sent = new ArrayList<>();
+            for (int i = 0; i < expected; i++) {
+                sent.add(new Sent(destinations.getAllValues().get(i), messages.getAllValues().get(i)));
+            }
+            return sent;
+        }
+    }
+}
@@ -39,7 +39,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/auth/forgot-password").permitAll()
                         .requestMatchers("/api/auth/reset-password").permitAll()
                         .requestMatchers("/api/users/**").permitAll()
-                        .requestMatchers("/api/user/public/**").permitAll()
+                        .requestMatchers("/api/user/public", "/api/user/public/**").permitAll()
                         // All other endpoints require authentication
                         .anyRequest().authenticated()
                 )
@@ -11,13 +11,18 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/user")
 @Slf4j
 public class UserController {
 
+    private static final int MAX_BATCH_SIZE = 200;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -35,6 +40,26 @@ public class UserController {
         return ResponseEntity.ok(PublicUserResponse.from(user));
     }
 
+    /**
+     * Public batch lookup: GET /api/user/public?ids=1,2,3
+     * One findAllById (single IN query) instead of one request per user.
+     * Unknown ids are simply absent from the result.
+     */
+    @GetMapping("/public")
+    public ResponseEntity<List<PublicUserResponse>> getPublicUserProfiles(@RequestParam List<Long> ids) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        if (uniqueIds.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.debug("Public profile batch request for {} users", uniqueIds.size());
+
+        List<PublicUserResponse> users = userRepository.findAllById(uniqueIds).stream()
+                .map(PublicUserResponse::from)
+                .toList();
+
+        return ResponseEntity.ok(users);
+    }
+
     @GetMapping("/profile")
     @PreAuthorize("hasRole('STUDENT') or hasRole('ADMIN')")
     public ResponseEntity<Map<String, Object>> getProfile(@AuthenticationPrincipal User user) {